@@ -10,8 +10,15 @@ import androidx.core.app.ActivityCompat;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
+import com.example.wxvoicerecord.adapter.PagedVoiceMsgList;
 import com.example.wxvoicerecord.adapter.VoiceMsgAdapter;
 import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.store.RetentionManager;
+import com.example.wxvoicerecord.store.VoiceMsgStore;
+import com.example.wxvoicerecord.voice.AudioTrackPlayer;
+import com.example.wxvoicerecord.voice.MediaManager;
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
 import com.example.wxvoicerecord.voice.record.RecordButton;
 
 import java.util.ArrayList;
@@ -24,8 +31,15 @@ public class MainActivity extends AppCompatActivity {
     private static String[] needPermissions = {
             Manifest.permission.RECORD_AUDIO, Manifest.permission.WRITE_EXTERNAL_STORAGE,
     };
+    //录音文件总大小上限（16k单声道16bit约4.6小时），超过时清理最久没有播放的录音
+    private static final long MAX_RECORD_BYTES = 512L * 1024 * 1024;
 
-    private List<VoiceMsg> voiceMsgList = new ArrayList<>();
+    private RecordButton recordButton;
+    private PagedVoiceMsgList pagedList;
+    /**
+     * 分页列表打开前录好的消息，打开后再追加
+     */
+    private final List<VoiceMsg> pendingMessages = new ArrayList<>();
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -33,19 +47,56 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
         verifyAudioPermissions(this);
         RecyclerView recyclerView = findViewById(R.id.recyclerView);
-        VoiceMsgAdapter adapter = new VoiceMsgAdapter(voiceMsgList);
+        VoiceMsgAdapter adapter = new VoiceMsgAdapter();
+        //录音都是本地WAV，使用AudioTrack直接播放，启动延迟更低
+        adapter.setVoicePlayer(AudioTrackPlayer.getInstance());
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
+        //只加载最后一页，滑动时再按页加载历史消息
+        //消息记录保存在存储中，第一次打开或存储损坏时从录音目录重建，标题显示进度
+        VoiceMsgStore.getInstance().setOnRebuildProgressListener((done, total) -> runOnUiThread(() ->
+                setTitle(done < total ? getString(R.string.rebuilding_voice_messages, done, total)
+                        : getString(R.string.app_name))));
+        PagedVoiceMsgList.open(VoiceMsgStore.getInstance(),
+                new VoiceIoExecutor.Callback<PagedVoiceMsgList>() {
+                    @Override
+                    public void onResult(PagedVoiceMsgList list) {
+                        pagedList = list;
+                        adapter.submitPagedList(list);
+                        for (VoiceMsg msg : pendingMessages) {
+                            adapter.appendMessage(msg, null);
+                        }
+                        pendingMessages.clear();
+                        recyclerView.scrollToPosition(Math.max(0, list.size() - 1));
+                        RetentionManager.getInstance().enforce();
+                    }
+                });
 
-        RecordButton recordButton = findViewById(R.id.btn_record);
+        //录音目录超过限制时在后台清理，过期的消息显示为已过期
+        RetentionManager.getInstance().setQuota(MAX_RECORD_BYTES, 0, 0);
+        RetentionManager.getInstance().setOnExpiredListener(ids -> {
+            if (pagedList != null) {
+                for (long id : ids) {
+                    pagedList.markExpired(id);
+                }
+            }
+        });
+
+        recordButton = findViewById(R.id.btn_record);
         recordButton.setOnRecordListener(new RecordButton.OnRecordListener() {
 
             @Override
             public void onFinish(String audioPath, int time) {
-                VoiceMsg msg = new VoiceMsg(audioPath, time, System.currentTimeMillis());
-                voiceMsgList.add(msg);
-                adapter.notifyDataSetChanged();
-                recyclerView.scrollToPosition(voiceMsgList.size() - 1);
+                VoiceMsg msg = new VoiceMsg(DefaultRecordConfig.parseRecordId(audioPath), audioPath, time,
+                        System.currentTimeMillis());
+                if (pagedList == null) {
+                    //消息记录还没有打开，打开后通过分页列表保存
+                    pendingMessages.add(msg);
+                    return;
+                }
+                //只插入新的一条，显示后再滚动到底部
+                adapter.appendMessage(msg, () -> recyclerView.scrollToPosition(adapter.getItemCount() - 1));
+                RetentionManager.getInstance().enforce();
             }
 
             @Override
@@ -55,6 +106,33 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    @Override
+    protected void onResume() {
+        super.onResume();
+        //预热录音，按下按钮时可以立即开始录音
+        recordButton.prepare();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        recordButton.release();
+        if (pagedList != null) {
+            //消息记录分批同步，退到后台时同步剩余的
+            pagedList.flush();
+        }
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        VoiceMsgStore.getInstance().setOnRebuildProgressListener(null);
+        RetentionManager.getInstance().setOnExpiredListener(null);
+        //播放器在消息之间复用，退出界面时才释放
+        MediaManager.getInstance().release();
+        AudioTrackPlayer.getInstance().release();
+    }
+
     /*
      * 申请录音权限*/
     public static void verifyAudioPermissions(Activity activity) {
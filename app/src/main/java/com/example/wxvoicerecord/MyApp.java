@@ -2,6 +2,14 @@ package com.example.wxvoicerecord;
 
 import android.app.Application;
 import android.content.Context;
+import android.os.StrictMode;
+import android.util.Log;
+
+import com.example.wxvoicerecord.store.CompactionJobService;
+import com.example.wxvoicerecord.voice.PcmCache;
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+import com.example.wxvoicerecord.voice.record.WavRecoveryScanner;
 
 /**
  * Created by Horrarndoo on 2022/9/23.
@@ -13,7 +21,32 @@ public class MyApp extends Application {
     @Override
     public void onCreate() {
         super.onCreate();
+        //在录音开始之前记录，恢复时跳过本次进程中写入的文件
+        final long startTime = System.currentTimeMillis();
         context = getApplicationContext();
+        if (BuildConfig.DEBUG) {
+            //录音和播放流程中的文件读写都在VoiceIoExecutor中执行，主线程读写文件时输出日志
+            StrictMode.setThreadPolicy(new StrictMode.ThreadPolicy.Builder()
+                    .detectDiskReads()
+                    .detectDiskWrites()
+                    .penaltyLog()
+                    .build());
+        }
+        //修复上次录音中途进程被杀留下的文件
+        VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_CLEANUP,
+                () -> WavRecoveryScanner.recover(DefaultRecordConfig.getRecordDir(), startTime));
+        //充电或空闲时把较早的录音转码为ADPCM
+        CompactionJobService.schedule(this);
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        if (BuildConfig.DEBUG) {
+            //命中率和淘汰次数用于评估缓存大小
+            Log.d("MyApp", "onTrimMemory level = " + level + ", " + PcmCache.getInstance());
+        }
+        PcmCache.getInstance().trimMemory(level);
     }
 
     /**
@@ -0,0 +1,393 @@
+package com.example.wxvoicerecord.adapter;
+
+import android.util.SparseArray;
+import android.util.SparseBooleanArray;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.store.IVoiceMsgSource;
+import com.example.wxvoicerecord.store.VoiceMsgTimeIndex;
+import com.example.wxvoicerecord.store.VoiceMsgTable;
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.WaveformEnvelope;
+
+import java.util.AbstractList;
+import java.util.concurrent.Callable;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 分页加载的消息列表（主线程使用）
+ * <p>
+ * 列表长度为消息总数，只在内存中保留可见位置附近的几页，没有加载的位置返回null（占位）。
+ * 绑定条目时调用 {@link #loadAround(int)}，按页从数据源加载并向滑动方向预加载，离开较远的页会被释放，
+ * 内存占用与消息总数无关。每页保存在 {@link VoiceMsgTable} 中，取出的消息是表中一行的视图。
+ * 每页消息的波形缩略图随页一起读取，与这一页一起保留和释放。
+ * 按时间跳转、统计通过 {@link VoiceMsgTimeIndex} 在数据源的id上查找，只加载跳转到的那一页
+ */
+public final class PagedVoiceMsgList extends AbstractList<VoiceMsg> {
+    /**
+     * 每页消息数
+     */
+    public static final int PAGE_SIZE = 50;
+    /**
+     * 保留当前页前后各几页，超出的释放
+     */
+    private static final int KEEP_PAGES = 2;
+    /**
+     * 向滑动方向预加载的页数
+     */
+    private static final int PREFETCH_PAGES = 1;
+
+    private final IVoiceMsgSource mSource;
+    private final SparseArray<VoiceMsgTable> mPages = new SparseArray<>();
+    private final SparseBooleanArray mLoadingPages = new SparseBooleanArray();
+    /**
+     * 每页消息的波形缩略图（包络），与mPages的页对应
+     */
+    private final SparseArray<byte[][]> mPageWaveforms = new SparseArray<>();
+    /**
+     * 只在文件读写线程中使用
+     */
+    private final VoiceMsgTimeIndex mTimeIndex;
+    private int mCount;
+    private int mLastPosition;
+    /**
+     * 滑动方向：1 向后（新消息），-1 向前（历史消息）
+     */
+    private int mDirection;
+    private OnPageLoadedListener mOnPageLoadedListener;
+
+    private PagedVoiceMsgList(IVoiceMsgSource source, int count) {
+        mSource = source;
+        mTimeIndex = new VoiceMsgTimeIndex(source);
+        mCount = count;
+        mLastPosition = Math.max(0, count - 1);
+    }
+
+    /**
+     * 打开数据源，只加载最后一页（最新的消息）
+     *
+     * @param source   数据源
+     * @param callback 打开完成（主线程回调）
+     */
+    public static void open(final IVoiceMsgSource source,
+                            final VoiceIoExecutor.Callback<PagedVoiceMsgList> callback) {
+        final VoiceMsgTable lastPage = new VoiceMsgTable(source.getDir(), PAGE_SIZE);
+        final byte[][] envelopes = new byte[PAGE_SIZE][];
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                int count = source.open();
+                source.load(lastPageOf(count) * PAGE_SIZE, PAGE_SIZE, lastPage);
+                readWaveforms(lastPage, envelopes);
+                return count;
+            }
+        }, new VoiceIoExecutor.Callback<Integer>() {
+            @Override
+            public void onResult(Integer count) {
+                PagedVoiceMsgList list = new PagedVoiceMsgList(source, count == null ? 0 : count);
+                if (count != null) {
+                    list.putPage(lastPageOf(count), lastPage, envelopes);
+                }
+                callback.onResult(list);
+            }
+        });
+    }
+
+    private static int lastPageOf(int count) {
+        return Math.max(0, count - 1) / PAGE_SIZE;
+    }
+
+    /**
+     * 读取一页消息的波形缩略图（文件读写线程中调用）
+     */
+    private static void readWaveforms(VoiceMsgTable items, byte[][] envelopes) {
+        for (int i = 0; i < items.size() && i < envelopes.length; i++) {
+            envelopes[i] = WaveformEnvelope.read(items.getPath(i));
+        }
+    }
+
+    private void putPage(int page, VoiceMsgTable items, byte[][] envelopes) {
+        mPages.put(page, items);
+        mPageWaveforms.put(page, envelopes);
+    }
+
+    void setOnPageLoadedListener(OnPageLoadedListener listener) {
+        mOnPageLoadedListener = listener;
+    }
+
+    /**
+     * 获取消息（不会触发加载）
+     *
+     * @return 消息，没有加载时返回null
+     */
+    @Override
+    public VoiceMsg get(int position) {
+        VoiceMsgTable items = mPages.get(position / PAGE_SIZE);
+        int index = position % PAGE_SIZE;
+        return items != null && index < items.size() ? items.get(index) : null;
+    }
+
+    /**
+     * 获取消息的波形缩略图（不会触发加载）
+     *
+     * @param position 位置
+     * @return 包络，没有包络或所在页没有加载时返回null
+     */
+    public byte[] getWaveform(int position) {
+        byte[][] envelopes = mPageWaveforms.get(position / PAGE_SIZE);
+        return envelopes != null ? envelopes[position % PAGE_SIZE] : null;
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    /**
+     * 加载位置所在的页，并向滑动方向预加载、释放较远的页
+     *
+     * @param position 正在显示的位置
+     */
+    public void loadAround(int position) {
+        if (position != mLastPosition) {
+            mDirection = position > mLastPosition ? 1 : -1;
+            mLastPosition = position;
+        }
+        int page = position / PAGE_SIZE;
+        loadPage(page);
+        for (int i = 1; i <= PREFETCH_PAGES && mDirection != 0; i++) {
+            loadPage(page + i * mDirection);
+        }
+        for (int i = mPages.size() - 1; i >= 0; i--) {
+            int key = mPages.keyAt(i);
+            if (Math.abs(key - page) > KEEP_PAGES) {
+                mPages.removeAt(i);
+                mPageWaveforms.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 在末尾追加一条消息（同时保存到数据源）
+     *
+     * @return 是否追加，已加载的页中已有这条消息时（例如打开时从录音目录导入过）忽略
+     */
+    public boolean append(final VoiceMsg msg) {
+        if (indexOfId(msg.getId()) >= 0) {
+            return false;
+        }
+        int page = mCount / PAGE_SIZE;
+        int index = mCount % PAGE_SIZE;
+        VoiceMsgTable items = mPages.get(page);
+        if (items == null && index == 0 && (page == 0 || mPages.get(page - 1) != null)) {
+            items = new VoiceMsgTable(mSource.getDir(), PAGE_SIZE);
+            putPage(page, items, new byte[PAGE_SIZE][]);
+        }
+        if (items != null && items.size() == index) {
+            items.add(msg);
+        }
+        final int position = mCount++;
+        //与加载同一优先级，按提交顺序执行，之后加载的页一定包含这条消息
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<byte[]>() {
+            @Override
+            public byte[] call() {
+                mSource.append(msg);
+                mTimeIndex.invalidate();
+                return WaveformEnvelope.read(msg.getPath());
+            }
+        }, new VoiceIoExecutor.Callback<byte[]>() {
+            @Override
+            public void onResult(byte[] envelope) {
+                byte[][] envelopes = mPageWaveforms.get(position / PAGE_SIZE);
+                if (envelope == null || envelopes == null) {
+                    //所在页没有加载时，加载这一页时再读取
+                    return;
+                }
+                envelopes[position % PAGE_SIZE] = envelope;
+                if (mOnPageLoadedListener != null) {
+                    mOnPageLoadedListener.onPageLoaded(position, 1);
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 跳转到某个时间：查找这个时间之后的第一条消息，只加载这一页
+     *
+     * @param time     时间戳（单位：ms），按天跳转时传这一天0点
+     * @param callback 主线程回调消息位置，没有消息时为-1
+     */
+    public void jumpToTime(final long time, final VoiceIoExecutor.Callback<Integer> callback) {
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mTimeIndex.positionOf(time);
+            }
+        }, new VoiceIoExecutor.Callback<Integer>() {
+            @Override
+            public void onResult(Integer position) {
+                if (position == null || mCount == 0) {
+                    callback.onResult(-1);
+                    return;
+                }
+                int target = Math.min(position, mCount - 1);
+                //跳转不是滑动，不向任何方向预加载
+                mLastPosition = target;
+                mDirection = 0;
+                loadAround(target);
+                callback.onResult(target);
+            }
+        });
+    }
+
+    /**
+     * 统计时间段内的消息数
+     *
+     * @param from     开始时间（包含）
+     * @param to       结束时间（不包含）
+     * @param callback 主线程回调消息数
+     */
+    public void countBetween(final long from, final long to, VoiceIoExecutor.Callback<Integer> callback) {
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mTimeIndex.countBetween(from, to);
+            }
+        }, callback);
+    }
+
+    /**
+     * 按天统计时间段内的消息数（只列出有消息的天）
+     *
+     * @param from     开始时间（包含）
+     * @param to       结束时间（不包含）
+     * @param days     输出：每天0点的时间（回调前不要读取）
+     * @param counts   输出：每天的消息数
+     * @param callback 主线程回调输出的天数
+     */
+    public void countPerDay(final long from, final long to, final long[] days, final int[] counts,
+                            VoiceIoExecutor.Callback<Integer> callback) {
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return mTimeIndex.countPerDay(from, to, days, counts);
+            }
+        }, callback);
+    }
+
+    /**
+     * 记录消息被播放（清理录音时优先清理最久没有播放的）
+     *
+     * @param id 消息id
+     */
+    public void markPlayed(final long id) {
+        final long time = System.currentTimeMillis();
+        VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_LIST, new Runnable() {
+            @Override
+            public void run() {
+                mSource.markPlayed(id, time);
+            }
+        });
+    }
+
+    /**
+     * 消息的录音文件已被清理，刷新已加载的这一条（没有加载的页加载时会带上过期标志）
+     *
+     * @param id 消息id
+     */
+    public void markExpired(long id) {
+        int position = indexOfId(id);
+        if (position < 0) {
+            return;
+        }
+        get(position).setExpired(true);
+        if (mOnPageLoadedListener != null) {
+            mOnPageLoadedListener.onPageLoaded(position, 1);
+        }
+    }
+
+    /**
+     * 把数据源缓存的修改同步到存储（界面退到后台时调用）
+     */
+    public void flush() {
+        VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_LIST, new Runnable() {
+            @Override
+            public void run() {
+                mSource.flush();
+            }
+        });
+    }
+
+    /**
+     * 在已加载的页中查找消息
+     *
+     * @return 位置，没有找到时返回-1
+     */
+    public int indexOfId(long id) {
+        for (int i = 0; i < mPages.size(); i++) {
+            int index = mPages.valueAt(i).indexOfId(id);
+            if (index >= 0) {
+                return mPages.keyAt(i) * PAGE_SIZE + index;
+            }
+        }
+        return -1;
+    }
+
+    private void loadPage(int page) {
+        loadPage(page, false);
+    }
+
+    /**
+     * @param reload 是否为追加消息后的重新加载（只重新加载一次）
+     */
+    private void loadPage(final int page, final boolean reload) {
+        final int start = page * PAGE_SIZE;
+        if (page < 0 || start >= mCount || mPages.get(page) != null || mLoadingPages.get(page)) {
+            return;
+        }
+        mLoadingPages.put(page, true);
+        final byte[][] envelopes = new byte[PAGE_SIZE][];
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_LIST, new Callable<VoiceMsgTable>() {
+            @Override
+            public VoiceMsgTable call() {
+                VoiceMsgTable items = new VoiceMsgTable(mSource.getDir(), PAGE_SIZE);
+                mSource.load(start, PAGE_SIZE, items);
+                readWaveforms(items, envelopes);
+                return items;
+            }
+        }, new VoiceIoExecutor.Callback<VoiceMsgTable>() {
+            @Override
+            public void onResult(VoiceMsgTable items) {
+                mLoadingPages.delete(page);
+                if (items == null || Math.abs(page - mLastPosition / PAGE_SIZE) > KEEP_PAGES) {
+                    //加载失败或已经滑远，下次显示时重新加载
+                    return;
+                }
+                if (!reload && items.size() < Math.min(PAGE_SIZE, mCount - start)) {
+                    //加载期间追加了消息，重新加载这一页
+                    loadPage(page, true);
+                    return;
+                }
+                putPage(page, items, envelopes);
+                if (mOnPageLoadedListener != null) {
+                    mOnPageLoadedListener.onPageLoaded(start, items.size());
+                }
+            }
+        });
+    }
+
+    /**
+     * 页加载完成监听
+     */
+    interface OnPageLoadedListener {
+        /**
+         * 页加载完成，刷新这段位置
+         *
+         * @param start 起始位置
+         * @param count 条数
+         */
+        void onPageLoaded(int start, int count);
+    }
+}
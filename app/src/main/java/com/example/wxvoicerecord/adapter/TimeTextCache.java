@@ -0,0 +1,44 @@
+package com.example.wxvoicerecord.adapter;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 消息时间文字缓存（按分钟分组，主线程使用）
+ * <p>
+ * 同一分钟内的消息共用一个字符串，命中时不分配内存；按分钟取模直接映射，冲突时覆盖
+ */
+final class TimeTextCache {
+    private static final long MINUTE = 60 * 1000;
+    /**
+     * 缓存的分钟数（2的幂）
+     */
+    private static final int CAPACITY = 64;
+
+    private final SimpleDateFormat mFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm", Locale.getDefault());
+    private final Date mDate = new Date();
+    private final long[] mMinutes = new long[CAPACITY];
+    private final String[] mTexts = new String[CAPACITY];
+
+    /**
+     * 获取时间文字
+     *
+     * @param time 时间戳（单位：ms）
+     * @return yyyy-MM-dd HH:mm
+     */
+    String get(long time) {
+        long minute = time / MINUTE;
+        int index = (int) (minute & (CAPACITY - 1));
+        String text = mTexts[index];
+        if (text == null || mMinutes[index] != minute) {
+            mDate.setTime(minute * MINUTE);
+            text = mFormat.format(mDate);
+            mMinutes[index] = minute;
+            mTexts[index] = text;
+        }
+        return text;
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.wxvoicerecord.adapter;
 
 import android.graphics.drawable.AnimationDrawable;
+import android.graphics.drawable.Drawable;
+import android.content.res.Resources;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -9,12 +11,18 @@ import android.widget.TextView;
 
 import com.example.wxvoicerecord.R;
 import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.IVoicePlayer;
 import com.example.wxvoicerecord.voice.MediaManager;
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.WaveformView;
 
-import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.AsyncListDiffer;
+import androidx.recyclerview.widget.DiffUtil;
 import androidx.recyclerview.widget.RecyclerView;
 
 /**
@@ -24,92 +32,501 @@ import androidx.recyclerview.widget.RecyclerView;
  */
 public class VoiceMsgAdapter extends RecyclerView.Adapter<VoiceMsgAdapter.BaseViewHolder> {
 
-    private List<VoiceMsg> msgList;
-    SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss");
+    /**
+     * 列表差异在后台线程计算，只刷新变化的条目
+     */
+    private final AsyncListDiffer<VoiceMsg> mDiffer = new AsyncListDiffer<>(this, DIFF_CALLBACK);
+    /**
+     * 最后一次提交的列表（可能还在计算差异，还没有显示）
+     */
+    private List<VoiceMsg> mSubmittedList = new ArrayList<>();
+    /**
+     * 分页加载的列表，设置后不再使用mDiffer
+     */
+    private PagedVoiceMsgList mPagedList;
+    /**
+     * 气泡宽度对应的最长语音时长（单位：s），超过时按最长显示
+     */
+    private static final int MAX_BUBBLE_DURATION = 60;
+    /**
+     * 播放状态变化的payload，只更新播放动画
+     */
+    public static final Object PAYLOAD_PLAYING = new Object();
+    /**
+     * 缓存时长文字的最长时长（单位：s）
+     */
+    private static final int MAX_CACHED_DURATION = 60 * 60;
 
+    private final TimeTextCache mTimeTextCache = new TimeTextCache();
+    /**
+     * 每个时长（0-60s）对应的气泡宽度，屏幕密度变化时重新计算
+     */
+    private final int[] mBubbleWidths = new int[MAX_BUBBLE_DURATION + 1];
+    private float mBubbleDensity;
+    /**
+     * 时长文字缓存，按需扩展
+     */
+    private String[] mDurationTexts = new String[MAX_BUBBLE_DURATION + 1];
+    private String mExpiredText;
+    /**
+     * 语音播放，默认使用MediaManager
+     */
+    private IVoicePlayer mVoicePlayer = MediaManager.getInstance();
 
-    public VoiceMsgAdapter(List<VoiceMsg> msgList) {
-        this.msgList = msgList;
+
+    public VoiceMsgAdapter() {
+        setHasStableIds(true);
+    }
+
+    /**
+     * 提交新的消息列表，后台计算差异后只刷新变化的条目
+     *
+     * @param list 新的列表（提交后不能再修改）
+     */
+    public void submitList(List<VoiceMsg> list) {
+        submitList(list, null);
+    }
+
+    /**
+     * 提交新的消息列表
+     *
+     * @param list           新的列表（提交后不能再修改）
+     * @param commitCallback 列表显示后回调（主线程），可以为null
+     */
+    public void submitList(List<VoiceMsg> list, Runnable commitCallback) {
+        if (mPagedList != null) {
+            mPagedList.setOnPageLoadedListener(null);
+            mPagedList = null;
+            notifyDataSetChanged();
+        }
+        mSubmittedList = list;
+        mDiffer.submitList(list, commitCallback);
+    }
+
+    /**
+     * 设置分页加载的列表（打开会话时调用），只显示已加载的页，其余位置显示占位
+     *
+     * @param list 分页列表
+     */
+    public void submitPagedList(PagedVoiceMsgList list) {
+        if (mPagedList != null) {
+            mPagedList.setOnPageLoadedListener(null);
+        }
+        mPagedList = list;
+        list.setOnPageLoadedListener(new PagedVoiceMsgList.OnPageLoadedListener() {
+            @Override
+            public void onPageLoaded(int start, int count) {
+                notifyItemRangeChanged(start, count);
+            }
+        });
+        notifyDataSetChanged();
+    }
+
+    /**
+     * 在末尾追加一条消息，只绑定新增的一条
+     *
+     * @param msg            新消息
+     * @param commitCallback 列表显示后回调（主线程），可以为null
+     */
+    public void appendMessage(VoiceMsg msg, Runnable commitCallback) {
+        if (mPagedList != null) {
+            if (mPagedList.append(msg)) {
+                notifyItemInserted(mPagedList.size() - 1);
+            }
+            if (commitCallback != null) {
+                commitCallback.run();
+            }
+            return;
+        }
+        //在最后提交的列表上追加，连续追加时不会丢失还在计算差异的消息
+        List<VoiceMsg> list = new ArrayList<>(mSubmittedList.size() + 1);
+        list.addAll(mSubmittedList);
+        list.add(msg);
+        submitList(list, commitCallback);
+    }
+
+    /**
+     * 获取当前显示的列表（不能修改），分页加载时没有加载的位置为null
+     */
+    public List<VoiceMsg> getCurrentList() {
+        return mPagedList != null ? mPagedList : mDiffer.getCurrentList();
+    }
+
+    /**
+     * 查找某个时间之后的第一条消息（分页加载时只加载这一页），用于按日期跳转
+     *
+     * @param time     时间戳（单位：ms）
+     * @param callback 主线程回调消息位置，没有消息时为-1
+     */
+    public void findPositionOfTime(long time, VoiceIoExecutor.Callback<Integer> callback) {
+        if (mPagedList != null) {
+            mPagedList.jumpToTime(time, callback);
+            return;
+        }
+        List<VoiceMsg> msgList = mDiffer.getCurrentList();
+        int position = 0;
+        while (position < msgList.size() - 1 && msgList.get(position).getId() < time) {
+            position++;
+        }
+        callback.onResult(msgList.isEmpty() ? -1 : position);
+    }
+
+    /**
+     * 设置语音播放
+     */
+    public void setVoicePlayer(IVoicePlayer voicePlayer) {
+        mVoicePlayer = voicePlayer;
     }
 
     @NonNull
     @Override
     public BaseViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
         View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.list_item_msg, parent, false);
-        return new BaseViewHolder(view);
+        BaseViewHolder holder = new BaseViewHolder(view);
+        view.setTag(holder);
+        view.setOnClickListener(mOnItemClickListener);
+        updateBubbleWidths(parent.getResources());
+        if (mExpiredText == null) {
+            mExpiredText = parent.getResources().getString(R.string.voice_expired);
+        }
+        return holder;
     }
 
     @Override
     public void onBindViewHolder(@NonNull BaseViewHolder holder, int position) {
-        VoiceMsg item = msgList.get(position);
+        VoiceMsg item = getCurrentList().get(position);
+        if (mPagedList != null) {
+            mPagedList.loadAround(position);
+        }
+        if (item == null) {
+            //还没有加载，显示占位
+            bindPlaceholder(holder);
+            return;
+        }
         //根据语音时长设置气泡的宽度
-        //chat_item_layout_content
-        View layout = holder.itemView.findViewById(R.id.chat_item_layout_content);
-        //最少长度dp_72,最大_242 ,变换空间0-170
-        int min = (int) layout.getResources().getDimension(R.dimen.dp_100);
-        int changeSpace = (int) layout.getResources().getDimension(R.dimen.dp_200);
-        float scale = (float) (item.getDuration() * 1.0 / 60);
-
-        //将scale的值控制在0-1.0之间
-        scale = Math.min(1.0f, scale);
-        scale = Math.max(0, scale);
-
-        int width = (int) (min + scale * changeSpace);
-        ViewGroup.LayoutParams params = layout.getLayoutParams();
-        if (params != null) {
+        int duration = Math.max(0, Math.min(MAX_BUBBLE_DURATION, item.getDuration()));
+        int width = mBubbleWidths[duration];
+        ViewGroup.LayoutParams params = holder.layoutContent.getLayoutParams();
+        if (params != null && params.width != width) {
             params.width = width;
-            layout.setLayoutParams(params);
+            holder.layoutContent.setLayoutParams(params);
         }
-        TextView tvDuration=holder.itemView.findViewById(R.id.tvDuration);
-        tvDuration.setText(item.getDuration()+"''");
+        //录音文件已被清理时显示已过期
+        setTextIfChanged(holder.tvDuration, item.isExpired() ? mExpiredText : getDurationText(item.getDuration()));
 
         //设置时间
-        String time = sdf.format(item.getTime());
-        TextView tvTime = holder.itemView.findViewById(R.id.chat_item_time);
-        tvTime.setText(time);
+        setTextIfChanged(holder.tvTime, mTimeTextCache.get(item.getTime()));
+
+        //波形缩略图（随页加载，还没有读取时显示平线）
+        holder.waveform.setEnvelope(mPagedList != null && !item.isExpired()
+                ? mPagedList.getWaveform(position) : null);
 
-        holder.itemView.setOnClickListener(v -> playAudio(v, position));
+        bindPlayingState(holder, item.getId() == mPlayingId);
     }
 
-    //正在播放的控件
-    ImageView ivAudio = null;
+    private void bindPlaceholder(BaseViewHolder holder) {
+        ViewGroup.LayoutParams params = holder.layoutContent.getLayoutParams();
+        if (params != null && params.width != mBubbleWidths[0]) {
+            params.width = mBubbleWidths[0];
+            holder.layoutContent.setLayoutParams(params);
+        }
+        setTextIfChanged(holder.tvDuration, "");
+        setTextIfChanged(holder.tvTime, "");
+        holder.waveform.setEnvelope(null);
+        bindPlayingState(holder, false);
+    }
 
-    private void playAudio(View view, int position) {
+    @Override
+    public void onBindViewHolder(@NonNull BaseViewHolder holder, int position, @NonNull List<Object> payloads) {
+        boolean onlyPlaying = !payloads.isEmpty();
+        for (int i = 0; i < payloads.size() && onlyPlaying; i++) {
+            onlyPlaying = payloads.get(i) == PAYLOAD_PLAYING;
+        }
+        if (onlyPlaying) {
+            //只有播放状态变化，不重新绑定整条
+            bindPlayingState(holder, getItemId(position) == mPlayingId);
+        } else {
+            onBindViewHolder(holder, position);
+        }
+    }
+
+    @Override
+    public void onViewAttachedToWindow(@NonNull BaseViewHolder holder) {
+        if (mPlayingId != RecyclerView.NO_ID && holder.getItemId() == mPlayingId) {
+            startAnimation(holder);
+        }
+    }
+
+    @Override
+    public void onViewDetachedFromWindow(@NonNull BaseViewHolder holder) {
+        //滑出屏幕后停止动画，不再消耗绘制
+        stopAnimation(holder);
+    }
+
+    /**
+     * 播放中的消息显示动画（只在条目显示时播放）
+     */
+    private void bindPlayingState(BaseViewHolder holder, boolean playing) {
+        if (playing) {
+            holder.ivAudio.setBackgroundResource(R.drawable.voice_animation_left_list);
+            if (holder.itemView.isAttachedToWindow()) {
+                startAnimation(holder);
+            }
+        } else {
+            stopAnimation(holder);
+            holder.ivAudio.setBackgroundResource(R.drawable.ic_vector_voice_left_level_3);
+        }
+    }
+
+    private static void startAnimation(BaseViewHolder holder) {
+        Drawable background = holder.ivAudio.getBackground();
+        if (background instanceof AnimationDrawable) {
+            ((AnimationDrawable) background).start();
+        }
+    }
+
+    private static void stopAnimation(BaseViewHolder holder) {
+        Drawable background = holder.ivAudio.getBackground();
+        if (background instanceof AnimationDrawable) {
+            ((AnimationDrawable) background).stop();
+        }
+    }
+
+    /**
+     * 所有条目共用的点击监听，通过ViewHolder获取点击位置
+     */
+    private final View.OnClickListener mOnItemClickListener = new View.OnClickListener() {
+        @Override
+        public void onClick(View v) {
+            BaseViewHolder holder = (BaseViewHolder) v.getTag();
+            playAudio(holder.getAdapterPosition());
+        }
+    };
+
+    /**
+     * 计算每个时长对应的气泡宽度（只在屏幕密度变化时计算）
+     */
+    private void updateBubbleWidths(Resources resources) {
+        float density = resources.getDisplayMetrics().density;
+        if (density == mBubbleDensity) {
+            return;
+        }
+        mBubbleDensity = density;
+        //最少长度dp_100,最大dp_300 ,变换空间0-dp_200
+        int min = (int) resources.getDimension(R.dimen.dp_100);
+        int changeSpace = (int) resources.getDimension(R.dimen.dp_200);
+        for (int duration = 0; duration <= MAX_BUBBLE_DURATION; duration++) {
+            float scale = (float) (duration * 1.0 / MAX_BUBBLE_DURATION);
+            mBubbleWidths[duration] = (int) (min + scale * changeSpace);
+        }
+    }
+
+    private String getDurationText(int duration) {
+        if (duration < 0 || duration > MAX_CACHED_DURATION) {
+            return duration + "''";
+        }
+        if (duration >= mDurationTexts.length) {
+            mDurationTexts = Arrays.copyOf(mDurationTexts, duration + 1);
+        }
+        String text = mDurationTexts[duration];
+        if (text == null) {
+            text = duration + "''";
+            mDurationTexts[duration] = text;
+        }
+        return text;
+    }
+
+    /**
+     * 文字相同（同一个缓存的字符串）时不重复设置，避免重新测量
+     */
+    private static void setTextIfChanged(TextView textView, String text) {
+        if (textView.getText() != text) {
+            textView.setText(text);
+        }
+    }
+
+    /**
+     * 正在播放的消息id
+     */
+    private long mPlayingId = RecyclerView.NO_ID;
+    /**
+     * 当前播放队列，播放回调中通过路径找到消息id
+     */
+    private List<String> mQueuePaths = new ArrayList<>();
+    private long[] mQueueIds = new long[0];
+    /**
+     * 播放队列序号，停止或开始新的队列时递增，之前队列的回调被忽略
+     */
+    private int mQueueGeneration;
+
+    /**
+     * 播放点击的消息，并自动连续播放后面未播放的消息
+     */
+    private void playAudio(int position) {
+        if (position == RecyclerView.NO_POSITION) {
+            return;
+        }
+        List<VoiceMsg> msgList = getCurrentList();
         VoiceMsg item = msgList.get(position);
-        ImageView newAudioView = view.findViewById(R.id.ivAudio);
-        boolean justStop = newAudioView == ivAudio;
-        if (ivAudio != null) {
-            ivAudio.setBackgroundResource(R.drawable.ic_vector_voice_left_level_3);
-            MediaManager.getInstance().reset();
-        }
-        if (justStop) {
-            //点击正在播放的View 只停止播放
+        if (item == null || item.isExpired()) {
+            return;
+        }
+        if (item.getId() == mPlayingId) {
+            //点击正在播放的消息 只停止播放
+            stopQueue();
             return;
         }
 
-        ivAudio = newAudioView;
-        MediaManager.getInstance().reset();
+        //分页加载时只连续播放已加载的消息
+        int end = position + 1;
+        while (end < msgList.size() && msgList.get(end) != null) {
+            end++;
+        }
+        List<String> queue = new ArrayList<>();
+        long[] ids = new long[end - position];
+        queue.add(item.getPath());
+        ids[0] = item.getId();
+        for (int i = position + 1; i < end; i++) {
+            VoiceMsg msg = msgList.get(i);
+            if (!msg.isPlayed() && !msg.isExpired()) {
+                ids[queue.size()] = msg.getId();
+                queue.add(msg.getPath());
+            }
+        }
+        stopQueue();
+        mQueuePaths = queue;
+        mQueueIds = ids;
+        mVoicePlayer.playQueue(queue, createOnPlayListener(mQueueGeneration));
+        //不等准备完成，先显示播放动画
+        setPlayingId(item.getId());
+    }
 
-        ivAudio.setBackgroundResource(R.drawable.voice_animation_left_list);
-        AnimationDrawable drawable = (AnimationDrawable) ivAudio.getBackground();
-        drawable.start();
-        MediaManager.getInstance().playVoice(item.getPath(), mp -> {
-            ivAudio.setBackgroundResource(R.drawable.ic_vector_voice_left_level_3);
-            MediaManager.getInstance().release();
-            ivAudio = null;
-        });
+    /**
+     * 停止当前队列，直接清除播放状态（之前队列的停止回调可能在替换队列后才到达，会被忽略）
+     */
+    private void stopQueue() {
+        mQueueGeneration++;
+        mVoicePlayer.reset();
+        setPlayingId(RecyclerView.NO_ID);
+    }
+
+    private IVoicePlayer.OnPlayListener createOnPlayListener(final int generation) {
+        return new IVoicePlayer.OnPlayListener() {
+            @Override
+            public void onPlayStart(String voicePath, long latencyMs) {
+                if (generation != mQueueGeneration) {
+                    return;
+                }
+                long id = findQueueId(voicePath);
+                int position = indexOf(id);
+                if (position >= 0) {
+                    getCurrentList().get(position).setPlayed(true);
+                }
+                if (mPagedList != null && id != RecyclerView.NO_ID) {
+                    mPagedList.markPlayed(id);
+                }
+                setPlayingId(id);
+            }
+
+            @Override
+            public void onPlayStop(String voicePath, boolean completed) {
+                if (generation != mQueueGeneration) {
+                    return;
+                }
+                long id = findQueueId(voicePath);
+                if (id != RecyclerView.NO_ID && id == mPlayingId) {
+                    setPlayingId(RecyclerView.NO_ID);
+                }
+            }
+
+            @Override
+            public void onPlayError(String voicePath, int what, int extra) {
+                onPlayStop(voicePath, false);
+            }
+        };
+    }
+
+    private long findQueueId(String path) {
+        int index = mQueuePaths.indexOf(path);
+        return index < 0 ? RecyclerView.NO_ID : mQueueIds[index];
+    }
+
+    /**
+     * 切换正在播放的消息，只刷新变化的两条的播放状态
+     */
+    private void setPlayingId(long id) {
+        if (id == mPlayingId) {
+            return;
+        }
+        int oldPosition = indexOf(mPlayingId);
+        mPlayingId = id;
+        if (oldPosition >= 0) {
+            notifyItemChanged(oldPosition, PAYLOAD_PLAYING);
+        }
+        int newPosition = indexOf(id);
+        if (newPosition >= 0) {
+            notifyItemChanged(newPosition, PAYLOAD_PLAYING);
+        }
+    }
 
+    private int indexOf(long id) {
+        if (id == RecyclerView.NO_ID) {
+            return -1;
+        }
+        if (mPagedList != null) {
+            return mPagedList.indexOfId(id);
+        }
+        List<VoiceMsg> msgList = mDiffer.getCurrentList();
+        for (int i = 0; i < msgList.size(); i++) {
+            if (msgList.get(i).getId() == id) {
+                return i;
+            }
+        }
+        return -1;
     }
 
     @Override
     public int getItemCount() {
-        return msgList.size();
+        return getCurrentList().size();
+    }
+
+    @Override
+    public long getItemId(int position) {
+        VoiceMsg item = getCurrentList().get(position);
+        //占位使用不会与消息id重复的负数
+        return item != null ? item.getId() : Long.MIN_VALUE + position;
     }
 
+    private static final DiffUtil.ItemCallback<VoiceMsg> DIFF_CALLBACK = new DiffUtil.ItemCallback<VoiceMsg>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull VoiceMsg oldItem, @NonNull VoiceMsg newItem) {
+            return oldItem.getId() == newItem.getId();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull VoiceMsg oldItem, @NonNull VoiceMsg newItem) {
+            //追加消息时前面的都是同一个对象，直接判定相同
+            return oldItem == newItem
+                    || (oldItem.getDuration() == newItem.getDuration()
+                    && oldItem.getTime() == newItem.getTime()
+                    && oldItem.getPath().equals(newItem.getPath()));
+        }
+    };
+
     public static class BaseViewHolder extends RecyclerView.ViewHolder {
+        final View layoutContent;
+        final TextView tvDuration;
+        final TextView tvTime;
+        final ImageView ivAudio;
+        final WaveformView waveform;
 
         public BaseViewHolder(@NonNull View itemView) {
             super(itemView);
+            layoutContent = itemView.findViewById(R.id.chat_item_layout_content);
+            tvDuration = itemView.findViewById(R.id.tvDuration);
+            tvTime = itemView.findViewById(R.id.chat_item_time);
+            ivAudio = itemView.findViewById(R.id.ivAudio);
+            waveform = itemView.findViewById(R.id.waveform);
         }
     }
 } 
\ No newline at end of file
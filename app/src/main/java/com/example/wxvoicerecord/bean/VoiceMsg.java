@@ -6,16 +6,40 @@ package com.example.wxvoicerecord.bean;
  * @date :2021/4/29 11:00
  */
 public class VoiceMsg {
+    /**
+     * 消息id（列表中唯一，RecyclerView的stable id和差异比较使用）
+     */
+    private final long id;
     private String path;
     private int duration;
     private long time;
+    /**
+     * 是否已播放（自动连续播放时跳过已播放的消息）
+     */
+    private boolean played;
+    /**
+     * 录音文件是否已被清理（不能再播放）
+     */
+    private boolean expired;
 
+    /**
+     * 使用消息时间作为id
+     */
     public VoiceMsg(String path, int duration, long time) {
+        this(time, path, duration, time);
+    }
+
+    public VoiceMsg(long id, String path, int duration, long time) {
+        this.id = id;
         this.path = path;
         this.duration = duration;
         this.time = time;
     }
 
+    public long getId() {
+        return id;
+    }
+
     public long getTime() {
         return time;
     }
@@ -39,4 +63,20 @@ public class VoiceMsg {
     public void setDuration(int duration) {
         this.duration = duration;
     }
-}
\ No newline at end of file
+
+    public boolean isPlayed() {
+        return played;
+    }
+
+    public void setPlayed(boolean played) {
+        this.played = played;
+    }
+
+    public boolean isExpired() {
+        return expired;
+    }
+
+    public void setExpired(boolean expired) {
+        this.expired = expired;
+    }
+}
@@ -12,6 +12,7 @@ import android.widget.TextView;
 import com.example.wxvoicerecord.R;
 import com.example.wxvoicerecord.utils.NavigationBarUtils;
 import com.example.wxvoicerecord.voice.VoiceStatusPanel;
+import com.example.wxvoicerecord.voice.record.LevelMailbox;
 
 import androidx.annotation.NonNull;
 
@@ -30,6 +31,10 @@ public class RecordStatusDialog extends BaseImmerseDialog {
     private ImageView ivRecord;
     private ImageView ivCancel;
     private VoiceStatusPanel voiceStatusPanel;
+    /**
+     * 电平信箱（dialog显示前设置时，在面板初始化后绑定）
+     */
+    private LevelMailbox mLevelMailbox;
     /**
      * 图标初始宽度（用于动画）
      */
@@ -61,6 +66,9 @@ public class RecordStatusDialog extends BaseImmerseDialog {
         ivRecord = findViewById(R.id.iv_record);
         ivCancel = findViewById(R.id.iv_cancel);
         tvCancel.setVisibility(INVISIBLE);
+        if (mLevelMailbox != null) {
+            voiceStatusPanel.setLevelMailbox(mLevelMailbox);
+        }
 
         mOriginIconWidth = ivCancel.getLayoutParams().width;
         mOriginIconHeight = ivCancel.getLayoutParams().height;
@@ -142,6 +150,18 @@ public class RecordStatusDialog extends BaseImmerseDialog {
         voiceStatusPanel.updateVoiceDb(db);
     }
 
+    /**
+     * 绑定电平信箱，面板按显示帧率读取电平值刷新声音波纹
+     *
+     * @param mailbox 电平信箱
+     */
+    public void setLevelMailbox(LevelMailbox mailbox) {
+        mLevelMailbox = mailbox;
+        if (voiceStatusPanel != null) {
+            voiceStatusPanel.setLevelMailbox(mailbox);
+        }
+    }
+
     /**
      * 设置取消按钮缩放
      *
@@ -0,0 +1,70 @@
+package com.example.wxvoicerecord.store;
+
+import android.app.job.JobInfo;
+import android.app.job.JobParameters;
+import android.app.job.JobScheduler;
+import android.app.job.JobService;
+import android.content.ComponentName;
+import android.content.Context;
+import android.util.Log;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 在充电或设备空闲时执行 {@link RecordCompactor}
+ * <p>
+ * JobScheduler的多个条件需要同时满足，充电和空闲分别作为两个周期任务调度，
+ * 任一个满足时执行；条件不再满足时停止转码，由系统稍后重新调度
+ */
+public class CompactionJobService extends JobService {
+    private static final String TAG = "CompactionJobService";
+    private static final int JOB_ID_CHARGING = 1001;
+    private static final int JOB_ID_IDLE = 1002;
+    /**
+     * 执行间隔
+     */
+    private static final long PERIOD = TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * 调度转码任务（已调度时不重复调度，避免每次启动应用都推迟执行时间）
+     */
+    public static void schedule(Context context) {
+        JobScheduler scheduler = (JobScheduler) context.getSystemService(Context.JOB_SCHEDULER_SERVICE);
+        if (scheduler == null) {
+            return;
+        }
+        for (JobInfo job : scheduler.getAllPendingJobs()) {
+            if (job.getId() == JOB_ID_CHARGING) {
+                return;
+            }
+        }
+        ComponentName service = new ComponentName(context, CompactionJobService.class);
+        scheduler.schedule(new JobInfo.Builder(JOB_ID_CHARGING, service)
+                .setRequiresCharging(true)
+                .setPeriodic(PERIOD)
+                .build());
+        scheduler.schedule(new JobInfo.Builder(JOB_ID_IDLE, service)
+                .setRequiresDeviceIdle(true)
+                .setPeriodic(PERIOD)
+                .build());
+    }
+
+    @Override
+    public boolean onStartJob(final JobParameters params) {
+        return RecordCompactor.getInstance().start(new RecordCompactor.OnCompactionListener() {
+            @Override
+            public void onCompactionFinished(int count, long savedBytes) {
+                Log.i(TAG, "compacted " + count + " records, saved " + savedBytes + " bytes");
+                jobFinished(params, false);
+            }
+        });
+    }
+
+    @Override
+    public boolean onStopJob(JobParameters params) {
+        RecordCompactor.getInstance().cancel();
+        return true;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音消息数据源（按时间顺序排列，所有方法都在文件读写线程中调用）
+ */
+public interface IVoiceMsgSource {
+    /**
+     * 获取录音文件目录（消息的录音文件路径由id推导）
+     */
+    String getDir();
+
+    /**
+     * 打开数据源
+     *
+     * @return 消息总数
+     */
+    int open();
+
+    /**
+     * 加载一段消息
+     *
+     * @param start 起始位置
+     * @param count 最多加载的条数
+     * @param out   加载结果（追加到末尾）
+     */
+    void load(int start, int count, VoiceMsgTable out);
+
+    /**
+     * 获取位置对应的消息id（不加载消息）
+     *
+     * @param position 位置
+     * @return 消息id
+     */
+    long getId(int position);
+
+    /**
+     * 按id二分查找位置（不加载消息）
+     * <p>
+     * 消息id是开始录音的时间，也用于按时间查找
+     *
+     * @param id 消息id
+     * @return 第一条id不小于给定id的消息位置，都小于时返回消息总数
+     */
+    int positionOf(long id);
+
+    /**
+     * 在末尾追加一条消息
+     *
+     * @param msg 新消息
+     */
+    void append(VoiceMsg msg);
+
+    /**
+     * 记录消息被播放（清理录音时优先清理最久没有播放的）
+     *
+     * @param id   消息id
+     * @param time 播放时间（单位：ms）
+     */
+    void markPlayed(long id, long time);
+
+    /**
+     * 把缓存的修改同步到存储（界面退到后台时调用）
+     */
+    void flush();
+}
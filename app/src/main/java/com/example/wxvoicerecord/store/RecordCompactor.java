@@ -0,0 +1,333 @@
+package com.example.wxvoicerecord.store;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.WavTranscoder;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 录音文件压缩（空闲时把较早的PCM录音转码为IMA ADPCM，16bit约节省3/4的空间）
+ * <p>
+ * 按批执行：在文件读写线程中从索引选出超过 {@link #setMinAge(long) 转码时长} 、没有过期、
+ * 没有转码过的消息；在有界的ForkJoinPool中并行转码到临时文件并同步到磁盘；
+ * 再回到文件读写线程中逐个重命名替换原文件并更新存储中的文件大小。
+ * 替换和清理录音都在文件读写线程中执行，不会把已清理的录音替换回来；
+ * 重命名是原子操作，播放时只会读到完整的原文件或转码后的文件。
+ * <p>
+ * 转码后的文件只能由 {@link com.example.wxvoicerecord.voice.AudioTrackPlayer} 播放
+ */
+public final class RecordCompactor {
+    /**
+     * 默认转码录音的时长（录音7天后转码）
+     */
+    private static final long DEFAULT_MIN_AGE = 7L * 24 * 60 * 60 * 1000;
+    /**
+     * 最多使用的线程数（后台任务，少于重建索引）
+     */
+    private static final int MAX_PARALLELISM = 4;
+    /**
+     * 每批最多转码的条数
+     */
+    static final int BATCH_SIZE = 16;
+    /**
+     * 转码结果：不是PCM格式，不需要转码
+     */
+    private static final long RESULT_SKIPPED = -1;
+    /**
+     * 转码结果：转码失败或已取消，下次执行时重试
+     */
+    private static final long RESULT_FAILED = -2;
+
+    public volatile static RecordCompactor instance;
+
+    private final VoiceMsgStore mStore;
+    private volatile long mMinAge = DEFAULT_MIN_AGE;
+    private volatile boolean isCancelled;
+    /**
+     * 以下只在主线程中使用
+     */
+    private boolean isRunning;
+    private Handler mMainHandler;
+    /**
+     * 当前批次，在文件读写线程中选出，转码线程中填写结果，再回到文件读写线程中替换
+     */
+    private final long[] mIds = new long[BATCH_SIZE];
+    private final long[] mResults = new long[BATCH_SIZE];
+    private int mBatchSize;
+    /**
+     * 本次执行中这个位置之前都已处理过
+     */
+    private int mScanPosition;
+    /**
+     * 本次执行的统计
+     */
+    private int mCompactedCount;
+    private long mSavedBytes;
+
+    RecordCompactor(VoiceMsgStore store) {
+        mStore = store;
+    }
+
+    public static RecordCompactor getInstance() {
+        if (instance == null) {
+            synchronized (RecordCompactor.class) {
+                if (instance == null) {
+                    instance = new RecordCompactor(VoiceMsgStore.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 设置转码录音的时长，下次执行时生效
+     *
+     * @param minAge 开始录音超过这个时长的录音才转码（单位：ms）
+     */
+    public void setMinAge(long minAge) {
+        mMinAge = minAge;
+    }
+
+    /**
+     * 在后台开始转码（主线程调用）
+     *
+     * @param listener 完成监听（主线程回调），可以为null
+     * @return 是否开始，正在执行时返回false
+     */
+    public boolean start(final OnCompactionListener listener) {
+        if (isRunning) {
+            return false;
+        }
+        isRunning = true;
+        isCancelled = false;
+        if (mMainHandler == null) {
+            mMainHandler = new Handler(Looper.getMainLooper());
+        }
+        int parallelism = Math.max(1, Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        final ForkJoinPool pool = new ForkJoinPool(parallelism);
+        pool.execute(new Runnable() {
+            @Override
+            public void run() {
+                compact();
+                pool.shutdown();
+                final int count = mCompactedCount;
+                final long savedBytes = mSavedBytes;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        isRunning = false;
+                        if (listener != null) {
+                            listener.onCompactionFinished(count, savedBytes);
+                        }
+                    }
+                });
+            }
+        });
+        return true;
+    }
+
+    /**
+     * 停止转码（正在转码的文件完成后停止，没有替换的临时文件下次执行时覆盖）
+     */
+    public void cancel() {
+        isCancelled = true;
+    }
+
+    /**
+     * 按批转码直到没有需要转码的录音或被取消（转码线程中调用，阻塞）
+     */
+    private void compact() {
+        try {
+            callOnIoThread(new Callable<Integer>() {
+                @Override
+                public Integer call() {
+                    mScanPosition = 0;
+                    mCompactedCount = 0;
+                    mSavedBytes = 0;
+                    return 0;
+                }
+            });
+            while (!isCancelled) {
+                int size = callOnIoThread(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return selectBatch();
+                    }
+                });
+                if (size == 0) {
+                    break;
+                }
+                transcodeBatch();
+                callOnIoThread(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return replaceBatch();
+                    }
+                });
+            }
+        } catch (InterruptedException e) {
+            e.printStackTrace();
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 在文件读写线程中执行并等待结果（后台任务，排在录音、播放、保存录音之后，与清理同一优先级）
+     */
+    private static int callOnIoThread(Callable<Integer> task) throws InterruptedException, ExecutionException {
+        FutureTask<Integer> future = new FutureTask<>(task);
+        VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_CLEANUP, future);
+        return future.get();
+    }
+
+    /**
+     * 选出一批需要转码的消息（文件读写线程）
+     *
+     * @return 选出的条数
+     */
+    int selectBatch() {
+        mStore.open();
+        int end = mStore.positionOf(System.currentTimeMillis() - mMinAge);
+        int size = 0;
+        int position = Math.min(mScanPosition, end);
+        for (; position < end && size < BATCH_SIZE; position++) {
+            int flags = mStore.getFlags(position);
+            if ((flags & (VoiceMsgStore.FLAG_EXPIRED | VoiceMsgStore.FLAG_COMPACTED)) == 0) {
+                mIds[size++] = mStore.getId(position);
+            }
+        }
+        mScanPosition = position;
+        mBatchSize = size;
+        return size;
+    }
+
+    /**
+     * 在ForkJoinPool中并行转码当前批次到临时文件（转码线程，阻塞）
+     */
+    void transcodeBatch() {
+        new TranscodeTask(0, mBatchSize).invoke();
+    }
+
+    private void transcode(int index) {
+        if (isCancelled) {
+            mResults[index] = RESULT_FAILED;
+            return;
+        }
+        String path = DefaultRecordConfig.getRecordFilePath(mStore.getDir(), mIds[index]);
+        String tempPath = WavTranscoder.getTempPath(path);
+        try {
+            long size = WavTranscoder.toAdpcm(path, tempPath);
+            mResults[index] = size >= 0 ? size : RESULT_SKIPPED;
+        } catch (IOException e) {
+            e.printStackTrace();
+            new File(tempPath).delete();
+            mResults[index] = RESULT_FAILED;
+        }
+    }
+
+    /**
+     * 用转码后的文件替换当前批次的录音，更新存储并同步（文件读写线程）
+     *
+     * @return 替换的条数
+     */
+    int replaceBatch() {
+        String dir = mStore.getDir();
+        int count = 0;
+        for (int i = 0; i < mBatchSize; i++) {
+            long result = mResults[i];
+            if (result == RESULT_FAILED) {
+                continue;
+            }
+            String path = DefaultRecordConfig.getRecordFilePath(dir, mIds[i]);
+            String tempPath = WavTranscoder.getTempPath(path);
+            File file = new File(path);
+            int position = mStore.indexOf(mIds[i]);
+            //转码期间已被清理
+            if (position < 0 || (mStore.getFlags(position) & VoiceMsgStore.FLAG_EXPIRED) != 0 || !file.exists()) {
+                new File(tempPath).delete();
+                continue;
+            }
+            long oldSize = file.length();
+            if (result == RESULT_SKIPPED || result >= oldSize) {
+                //已经是压缩格式（包括上次替换后没来得及更新存储的），以后不再转码
+                new File(tempPath).delete();
+                mStore.markCompacted(position, oldSize);
+                continue;
+            }
+            if (WavTranscoder.replace(tempPath, path)) {
+                mStore.markCompacted(position, result);
+                mSavedBytes += oldSize - result;
+                mCompactedCount++;
+                count++;
+            }
+        }
+        mStore.flush();
+        return count;
+    }
+
+    /**
+     * 本次执行转码的文件数（文件读写线程）
+     */
+    int getCompactedCount() {
+        return mCompactedCount;
+    }
+
+    /**
+     * 本次执行节省的字节数（文件读写线程）
+     */
+    long getSavedBytes() {
+        return mSavedBytes;
+    }
+
+    /**
+     * 转码一段位置的文件，多于一个时拆成两半
+     */
+    private final class TranscodeTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+
+        TranscodeTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= 1) {
+                for (int i = start; i < end; i++) {
+                    transcode(i);
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new TranscodeTask(start, middle), new TranscodeTask(middle, end));
+        }
+    }
+
+    /**
+     * 转码完成监听
+     */
+    public interface OnCompactionListener {
+        /**
+         * 本次执行完成（主线程回调）
+         *
+         * @param count      转码的文件数
+         * @param savedBytes 节省的字节数
+         */
+        void onCompactionFinished(int count, long savedBytes);
+    }
+}
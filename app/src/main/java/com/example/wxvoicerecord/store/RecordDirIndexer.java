@@ -0,0 +1,155 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 从录音目录重建消息记录（存储不存在或损坏时，录音文件是唯一的依据）
+ * <p>
+ * 只列一次目录，从文件名中解析出消息id（开始录音的时间）并排序；
+ * 读取文件头探测时长是主要耗时，按位置区间拆分到有界的ForkJoinPool中并行执行，
+ * 调用线程等待期间定时通知进度
+ */
+final class RecordDirIndexer {
+    /**
+     * 最多使用的线程数
+     */
+    private static final int MAX_PARALLELISM = 8;
+    /**
+     * 每个任务最少探测的文件数，少于时不再拆分
+     */
+    private static final int SPLIT_THRESHOLD = 32;
+    /**
+     * 进度通知间隔（单位：ms）
+     */
+    private static final long PROGRESS_INTERVAL = 100;
+
+    private final String mDir;
+    private final AtomicInteger mDoneCount = new AtomicInteger();
+    long[] ids = new long[0];
+    /**
+     * 消息时间：开始录音的时间 + 时长（与录音完成时相同，不依赖文件修改时间）
+     */
+    long[] times;
+    int[] durationsMs;
+    long[] fileSizes;
+    int count;
+
+    private RecordDirIndexer(String dir) {
+        mDir = dir;
+    }
+
+    /**
+     * 扫描录音目录（阻塞直到完成，文件读写线程中调用）
+     *
+     * @param dir      录音目录
+     * @param listener 进度监听（在调用线程中回调），可以为null
+     * @return 按id排序的消息记录
+     * @throws IOException 探测被中断或失败（结果不完整，不能使用）
+     */
+    static RecordDirIndexer scan(String dir, VoiceMsgStore.OnRebuildProgressListener listener)
+            throws IOException {
+        RecordDirIndexer indexer = new RecordDirIndexer(dir);
+        indexer.list();
+        indexer.probe(listener);
+        return indexer;
+    }
+
+    private void list() {
+        String[] names = new File(mDir).list();
+        if (names == null) {
+            return;
+        }
+        ids = new long[names.length];
+        for (String name : names) {
+            long id = DefaultRecordConfig.parseRecordId(name);
+            if (id >= 0) {
+                ids[count++] = id;
+            }
+        }
+        Arrays.sort(ids, 0, count);
+        times = new long[count];
+        durationsMs = new int[count];
+        fileSizes = new long[count];
+    }
+
+    private void probe(VoiceMsgStore.OnRebuildProgressListener listener) throws IOException {
+        if (count == 0) {
+            return;
+        }
+        int parallelism = Math.max(1, Math.min(MAX_PARALLELISM, Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            ForkJoinTask<Void> task = pool.submit(new ProbeTask(0, count));
+            while (true) {
+                try {
+                    task.get(PROGRESS_INTERVAL, TimeUnit.MILLISECONDS);
+                    break;
+                } catch (TimeoutException e) {
+                    if (listener != null) {
+                        listener.onRebuildProgress(mDoneCount.get(), count);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("probe interrupted");
+        } catch (ExecutionException e) {
+            throw new IOException("probe failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+        if (listener != null) {
+            listener.onRebuildProgress(count, count);
+        }
+    }
+
+    private void probe(int index) {
+        long id = ids[index];
+        File file = new File(DefaultRecordConfig.getRecordFilePath(mDir, id));
+        long durationMs = Math.max(0, AudioDurationProbe.getDurationMs(file.getPath()));
+        durationsMs[index] = (int) Math.min(Integer.MAX_VALUE, durationMs);
+        times[index] = id + durationMs;
+        fileSizes[index] = file.length();
+    }
+
+    /**
+     * 探测一段位置的文件，超过阈值时拆成两半
+     */
+    private final class ProbeTask extends RecursiveAction {
+        private final int start;
+        private final int end;
+
+        ProbeTask(int start, int end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - start <= SPLIT_THRESHOLD) {
+                for (int i = start; i < end; i++) {
+                    probe(i);
+                }
+                mDoneCount.addAndGet(end - start);
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ProbeTask(start, middle), new ProbeTask(middle, end));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 以录音目录作为消息数据源
+ * <p>
+ * 打开时只列一次目录，从文件名中解析出消息id（开始录音的时间戳）并排序，
+ * 加载时才读取这一页文件的时长和修改时间
+ */
+public class RecordDirSource implements IVoiceMsgSource {
+    private final String mDir;
+    private long[] mIds = new long[0];
+    private int mCount;
+
+    public RecordDirSource(String dir) {
+        mDir = dir;
+    }
+
+    @Override
+    public String getDir() {
+        return mDir;
+    }
+
+    @Override
+    public int open() {
+        String[] names = new File(mDir).list();
+        mCount = 0;
+        mIds = new long[names == null ? 0 : names.length];
+        if (names != null) {
+            for (String name : names) {
+                long id = DefaultRecordConfig.parseRecordId(name);
+                if (id >= 0) {
+                    mIds[mCount++] = id;
+                }
+            }
+        }
+        Arrays.sort(mIds, 0, mCount);
+        return mCount;
+    }
+
+    @Override
+    public void load(int start, int count, VoiceMsgTable out) {
+        int end = Math.min(mCount, start + count);
+        for (int i = start; i < end; i++) {
+            long id = mIds[i];
+            String path = DefaultRecordConfig.getRecordFilePath(mDir, id);
+            long durationMs = AudioDurationProbe.getDurationMs(path);
+            long time = new File(path).lastModified();
+            out.add(id, time == 0 ? id : time, (int) Math.max(0, durationMs), 0);
+        }
+    }
+
+    @Override
+    public long getId(int position) {
+        return mIds[position];
+    }
+
+    @Override
+    public int positionOf(long id) {
+        int position = Arrays.binarySearch(mIds, 0, mCount, id);
+        if (position < 0) {
+            return -position - 1;
+        }
+        //id相同时取第一条
+        while (position > 0 && mIds[position - 1] == id) {
+            position--;
+        }
+        return position;
+    }
+
+    /**
+     * 时长四舍五入到秒，与录音完成时相同
+     *
+     * @param durationMs 时长（单位：ms）
+     * @return 时长（单位：s），无法识别时为0
+     */
+    static int toSeconds(long durationMs) {
+        return durationMs <= 0 ? 0 : Math.max(1, (int) ((durationMs + 500) / 1000));
+    }
+
+    @Override
+    public void append(VoiceMsg msg) {
+        if (mCount == mIds.length) {
+            mIds = Arrays.copyOf(mIds, Math.max(16, mCount * 2));
+        }
+        mIds[mCount++] = msg.getId();
+    }
+
+    @Override
+    public void markPlayed(long id, long time) {
+        //不保存播放记录
+    }
+
+    @Override
+    public void flush() {
+        //录音文件本身就是数据，不需要同步
+    }
+}
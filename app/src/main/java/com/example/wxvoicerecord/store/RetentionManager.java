@@ -0,0 +1,276 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.WavTranscoder;
+import com.example.wxvoicerecord.voice.WaveformEnvelope;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 录音文件清理（限制录音目录的大小）
+ * <p>
+ * 支持三种限制（小于等于0表示不限制，默认都不限制，需要通过 {@link #setQuota(long, long, int)} 设置）：
+ * 录音文件总大小、保留时长、保留最近的条数（只有一个会话，按全部消息计算）。
+ * 文件总大小由 {@link VoiceMsgStore} 随追加、过期累计，不扫描目录；
+ * 超过保留时长或条数的是按id排序的最前面一段，直接按位置清理；
+ * 超过总大小时清理最久没有播放的（没有播放过的按开始录音的时间）。
+ * <p>
+ * 在文件读写线程中按批清理，每批先在存储中标记为过期并同步，再删除录音文件，
+ * 批之间让出线程给录音和播放；列表中过期的消息显示为已过期，不会播放失败。
+ * 标记过期后、删除文件前进程退出会留下文件，每次启动后第一次检查时按批删除已过期消息的文件
+ */
+public final class RetentionManager {
+    /**
+     * 每批最多清理的条数
+     */
+    private static final int BATCH_SIZE = 32;
+    /**
+     * 删除遗留文件时每批检查的条数
+     */
+    private static final int RECLAIM_BATCH_SIZE = 256;
+
+    public volatile static RetentionManager instance;
+
+    private final VoiceMsgStore mStore;
+    private volatile long mMaxBytes;
+    private volatile long mMaxAge;
+    private volatile int mMaxCount;
+    private OnExpiredListener mOnExpiredListener;
+    /**
+     * 以下只在主线程中使用
+     */
+    private boolean isRunning;
+    private boolean isRequested;
+    private boolean isReclaimScheduled;
+    /**
+     * 以下只在文件读写线程中使用：按位置清理时，这个位置之前都已过期
+     */
+    private int mExpiredPrefix;
+    /**
+     * 删除遗留文件时下一批开始的位置
+     */
+    private int mReclaimPosition;
+    private final long[] mKeys = new long[BATCH_SIZE];
+    private final int[] mPositions = new int[BATCH_SIZE];
+
+    RetentionManager(VoiceMsgStore store) {
+        mStore = store;
+    }
+
+    public static RetentionManager getInstance() {
+        if (instance == null) {
+            synchronized (RetentionManager.class) {
+                if (instance == null) {
+                    instance = new RetentionManager(VoiceMsgStore.getInstance());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 设置限制（小于等于0表示不限制），下次 {@link #enforce()} 时生效
+     *
+     * @param maxBytes 录音文件总大小（单位：字节）
+     * @param maxAge   保留时长（单位：ms）
+     * @param maxCount 保留最近的条数
+     */
+    public void setQuota(long maxBytes, long maxAge, int maxCount) {
+        mMaxBytes = maxBytes;
+        mMaxAge = maxAge;
+        mMaxCount = maxCount;
+    }
+
+    /**
+     * 设置消息过期监听（主线程回调）
+     */
+    public void setOnExpiredListener(OnExpiredListener listener) {
+        mOnExpiredListener = listener;
+    }
+
+    /**
+     * 检查限制，超过时在后台按批清理（主线程调用，正在清理时合并为一次）
+     */
+    public void enforce() {
+        if (!isReclaimScheduled) {
+            isReclaimScheduled = true;
+            VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_CLEANUP, mReclaimTask);
+        }
+        isRequested = true;
+        if (!isRunning) {
+            isRunning = true;
+            runBatch();
+        }
+    }
+
+    private void runBatch() {
+        isRequested = false;
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_CLEANUP, new Callable<long[]>() {
+            @Override
+            public long[] call() {
+                return expireBatch();
+            }
+        }, new VoiceIoExecutor.Callback<long[]>() {
+            @Override
+            public void onResult(long[] ids) {
+                boolean hasExpired = ids != null && ids.length > 0;
+                if (hasExpired && mOnExpiredListener != null) {
+                    mOnExpiredListener.onExpired(ids);
+                }
+                if (hasExpired || isRequested) {
+                    runBatch();
+                } else {
+                    isRunning = false;
+                }
+            }
+        });
+    }
+
+    /**
+     * 清理一批（文件读写线程）
+     *
+     * @return 这一批过期的消息id，没有需要清理的时返回空数组
+     */
+    long[] expireBatch() {
+        int count = mStore.open();
+        int size = selectByPosition(count);
+        if (size == 0) {
+            size = selectLeastRecentlyPlayed(count);
+        }
+        long[] ids = new long[size];
+        for (int i = 0; i < size; i++) {
+            ids[i] = mStore.getId(mPositions[i]);
+            mStore.markExpired(mPositions[i]);
+        }
+        if (size == 0) {
+            return ids;
+        }
+        //先同步过期标记再删除文件，中途退出时只会留下多余的文件，不会出现无法播放的消息
+        mStore.flush();
+        String dir = mStore.getDir();
+        for (long id : ids) {
+            deleteFiles(dir, id);
+        }
+        return ids;
+    }
+
+    /**
+     * 删除遗留文件，每批执行完再排队执行下一批（文件读写线程）
+     */
+    private final Runnable mReclaimTask = new Runnable() {
+        @Override
+        public void run() {
+            if (reclaimBatch()) {
+                VoiceIoExecutor.getInstance().execute(VoiceIoExecutor.PRIORITY_CLEANUP, this);
+            }
+        }
+    };
+
+    /**
+     * 删除一批已过期消息遗留的文件（文件读写线程）
+     *
+     * @return 是否还有没有检查的消息
+     */
+    boolean reclaimBatch() {
+        int count = mStore.open();
+        int end = Math.min(count, mReclaimPosition + RECLAIM_BATCH_SIZE);
+        String dir = mStore.getDir();
+        for (; mReclaimPosition < end; mReclaimPosition++) {
+            if ((mStore.getFlags(mReclaimPosition) & VoiceMsgStore.FLAG_EXPIRED) != 0) {
+                deleteFiles(dir, mStore.getId(mReclaimPosition));
+            }
+        }
+        return mReclaimPosition < count;
+    }
+
+    private static void deleteFiles(String dir, long id) {
+        String path = DefaultRecordConfig.getRecordFilePath(dir, id);
+        new File(path).delete();
+        new File(WaveformEnvelope.getPath(path)).delete();
+        new File(WavTranscoder.getTempPath(path)).delete();
+    }
+
+    /**
+     * 选出超过保留时长或条数的消息（按id排序的最前面一段）
+     *
+     * @return 选出的条数
+     */
+    private int selectByPosition(int count) {
+        int end = 0;
+        long maxAge = mMaxAge;
+        if (maxAge > 0) {
+            end = mStore.positionOf(System.currentTimeMillis() - maxAge);
+        }
+        int maxCount = mMaxCount;
+        if (maxCount > 0) {
+            end = Math.max(end, count - maxCount);
+        }
+        int size = 0;
+        int position = Math.min(mExpiredPrefix, end);
+        for (; position < end && size < BATCH_SIZE; position++) {
+            if ((mStore.getFlags(position) & VoiceMsgStore.FLAG_EXPIRED) == 0) {
+                mPositions[size++] = position;
+            }
+        }
+        mExpiredPrefix = size > 0 ? mPositions[0] : Math.max(mExpiredPrefix, end);
+        return size;
+    }
+
+    /**
+     * 超过总大小时，选出最久没有播放的消息，够释放超出的大小为止
+     *
+     * @return 选出的条数
+     */
+    private int selectLeastRecentlyPlayed(int count) {
+        long maxBytes = mMaxBytes;
+        long excess = mStore.getTotalBytes() - maxBytes;
+        if (maxBytes <= 0 || excess <= 0) {
+            return 0;
+        }
+        //保留最多BATCH_SIZE条最久没有播放的，按时间从早到晚排列
+        int size = 0;
+        for (int position = 0; position < count; position++) {
+            if ((mStore.getFlags(position) & VoiceMsgStore.FLAG_EXPIRED) != 0) {
+                continue;
+            }
+            long lastPlayed = mStore.getLastPlayedTime(position);
+            long key = lastPlayed != 0 ? lastPlayed : mStore.getId(position);
+            if (size == BATCH_SIZE && key >= mKeys[size - 1]) {
+                continue;
+            }
+            int index = size < BATCH_SIZE ? size++ : size - 1;
+            while (index > 0 && mKeys[index - 1] > key) {
+                mKeys[index] = mKeys[index - 1];
+                mPositions[index] = mPositions[index - 1];
+                index--;
+            }
+            mKeys[index] = key;
+            mPositions[index] = position;
+        }
+        long freed = 0;
+        for (int i = 0; i < size; i++) {
+            freed += mStore.getFileSize(mPositions[i]);
+            if (freed >= excess) {
+                size = i + 1;
+                break;
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 消息过期监听
+     */
+    public interface OnExpiredListener {
+        /**
+         * 消息的录音文件已被清理（主线程回调）
+         *
+         * @param ids 过期的消息id
+         */
+        void onExpired(long[] ids);
+    }
+}
@@ -0,0 +1,714 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.CRC32;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音消息记录存储（只追加的定长记录日志 + 内存映射的索引，所有方法都在文件读写线程中调用）
+ * <p>
+ * 日志（messages.log）：16字节文件头，之后每条消息32字节：
+ * id(8) 时间(8) 时长ms(4) 标志(4) 文件大小(4) CRC32(4)，
+ * 写了一半的记录由长度和CRC识别，打开时从末尾截掉。
+ * 日志只追加不改写：标志或文件大小变化时追加这条消息的一条新记录，索引指向最新的记录，
+ * 重建索引时同一id保留最后写入的一条，写了一半的更新只会丢失这次更新。
+ * <p>
+ * 索引（messages.idx）：32字节文件头，之后按消息id排序，每条32字节：
+ * id(8) 日志偏移(8) 最近播放时间(8) 文件大小(4) 标志(4)。
+ * 索引整体映射到内存，打开时只读文件头，加载一页时按位置取出偏移再读这一页的记录，
+ * 打开和加载都与消息总数无关；清理录音只需要遍历索引。文件头中记录录音文件总大小，随追加、过期、转码更新。
+ * 最近播放时间只保存在索引中，重建索引后丢失（按开始录音的时间处理）。
+ * <p>
+ * 追加时不立即同步，每 {@link #SYNC_BATCH} 条或调用 {@link #flush()} 时同步一次。
+ * 索引文件头记录同步时的日志长度和状态，修改前先标记为未同步，
+ * 打开时状态或日志长度不一致（上次没有正常同步）就从日志重建索引
+ */
+public final class VoiceMsgStore implements IVoiceMsgSource {
+    /**
+     * 标志：已播放
+     */
+    public static final int FLAG_PLAYED = 1;
+    /**
+     * 标志：录音文件已被清理
+     */
+    public static final int FLAG_EXPIRED = 2;
+    /**
+     * 标志：录音文件已转码为更小的格式（或不需要转码）
+     */
+    public static final int FLAG_COMPACTED = 4;
+
+    static final String LOG_FILE_NAME = "messages.log";
+    static final String INDEX_FILE_NAME = "messages.idx";
+    static final int RECORD_SIZE = 32;
+    static final int LOG_HEADER_SIZE = 16;
+
+    private static final int LOG_MAGIC = 0x47534D56;
+    private static final int INDEX_MAGIC = 0x58444956;
+    private static final int LOG_VERSION = 1;
+    private static final int INDEX_VERSION = 2;
+    /**
+     * 日志文件头：magic(4) 版本(4) 记录长度(4) 标志(4)
+     */
+    private static final int LOG_FLAGS_OFFSET = 12;
+    /**
+     * 日志标志：已从录音目录导入
+     */
+    private static final int LOG_FLAG_MIGRATED = 1;
+    /**
+     * 索引文件头：magic(4) 版本(4) 条数(4) 状态(4) 同步时的日志长度(8) 录音文件总大小(8)
+     */
+    private static final int INDEX_HEADER_SIZE = 32;
+    private static final int INDEX_COUNT_OFFSET = 8;
+    private static final int INDEX_STATE_OFFSET = 12;
+    private static final int INDEX_LOG_SIZE_OFFSET = 16;
+    private static final int INDEX_TOTAL_BYTES_OFFSET = 24;
+    private static final int INDEX_ENTRY_SIZE = 32;
+    /**
+     * 索引条目内的偏移
+     */
+    private static final int ENTRY_LOG_OFFSET = 8;
+    private static final int ENTRY_LAST_PLAYED = 16;
+    private static final int ENTRY_FILE_SIZE = 24;
+    private static final int ENTRY_FLAGS = 28;
+    private static final int INDEX_STATE_CLEAN = 1;
+    private static final int INDEX_STATE_DIRTY = 2;
+    private static final int INITIAL_INDEX_CAPACITY = 1024;
+    private static final int CRC_OFFSET = RECORD_SIZE - 4;
+    /**
+     * 每追加多少条同步一次
+     */
+    private static final int SYNC_BATCH = 16;
+    /**
+     * 重建索引时每次读取的记录数
+     */
+    private static final int REBUILD_BATCH = 128;
+
+    public volatile static VoiceMsgStore instance;
+
+    private final String mDir;
+    private final ByteBuffer mRecord = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32 mCrc = new CRC32();
+    private FileChannel mLog;
+    private FileChannel mIndexChannel;
+    private MappedByteBuffer mIndex;
+    private int mIndexCapacity;
+    private int mCount;
+    private long mLogSize;
+    /**
+     * 上次同步后追加的条数
+     */
+    private int mPendingCount;
+    private boolean isClean;
+    private volatile OnRebuildProgressListener mOnRebuildProgressListener;
+
+    VoiceMsgStore(String dir) {
+        mDir = dir;
+    }
+
+    public static VoiceMsgStore getInstance() {
+        if (instance == null) {
+            synchronized (VoiceMsgStore.class) {
+                if (instance == null) {
+                    instance = new VoiceMsgStore(DefaultRecordConfig.getRecordDir());
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public String getDir() {
+        return mDir;
+    }
+
+    /**
+     * 设置从录音目录重建的进度监听（在文件读写线程中回调）
+     */
+    public void setOnRebuildProgressListener(OnRebuildProgressListener listener) {
+        mOnRebuildProgressListener = listener;
+    }
+
+    /**
+     * 打开存储（已经打开时直接返回），第一次打开或日志损坏时从录音目录重建
+     */
+    @Override
+    public int open() {
+        if (mLog != null) {
+            return mCount;
+        }
+        try {
+            File dir = new File(mDir);
+            dir.mkdirs();
+            mLog = new RandomAccessFile(new File(dir, LOG_FILE_NAME), "rw").getChannel();
+            mIndexChannel = new RandomAccessFile(new File(dir, INDEX_FILE_NAME), "rw").getChannel();
+            boolean isMigrated = openLog();
+            if (!openIndex()) {
+                rebuildIndex();
+            }
+            if (!isMigrated) {
+                migrate();
+            }
+            return mCount;
+        } catch (IOException e) {
+            e.printStackTrace();
+            close();
+            return 0;
+        }
+    }
+
+    @Override
+    public void load(int start, int count, VoiceMsgTable out) {
+        if (mLog == null) {
+            return;
+        }
+        int end = Math.min(mCount, start + count);
+        for (int i = Math.max(0, start); i < end; i++) {
+            int entry = entryOffset(i);
+            long id = mIndex.getLong(entry);
+            boolean isValid = false;
+            try {
+                isValid = readRecord(mIndex.getLong(entry + ENTRY_LOG_OFFSET)) && mRecord.getLong(0) == id;
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (!isValid) {
+                //记录损坏时只保留id，保证位置不变
+                out.add(id, id, 0, 0);
+                continue;
+            }
+            out.add(id, mRecord.getLong(8), mRecord.getInt(16), mRecord.getInt(20));
+        }
+    }
+
+    /**
+     * 追加消息（id已存在时忽略）
+     */
+    @Override
+    public void append(VoiceMsg msg) {
+        if (mLog == null) {
+            return;
+        }
+        String path = msg.getPath();
+        long durationMs = AudioDurationProbe.getDurationMs(path);
+        if (durationMs <= 0) {
+            durationMs = msg.getDuration() * 1000L;
+        }
+        try {
+            if (appendRecord(msg.getId(), msg.getTime(), durationMs, msg.isPlayed() ? FLAG_PLAYED : 0,
+                    new File(path).length()) && ++mPendingCount >= SYNC_BATCH) {
+                flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 同步到存储（日志先于索引）
+     */
+    @Override
+    public void flush() {
+        if (mLog == null || isClean) {
+            return;
+        }
+        try {
+            mLog.force(false);
+            mIndex.putLong(INDEX_LOG_SIZE_OFFSET, mLogSize);
+            mIndex.force();
+            mIndex.putInt(INDEX_STATE_OFFSET, INDEX_STATE_CLEAN);
+            mIndex.force();
+            isClean = true;
+            mPendingCount = 0;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    @Override
+    public long getId(int position) {
+        return mIndex.getLong(entryOffset(position));
+    }
+
+    @Override
+    public int positionOf(long id) {
+        if (mLog == null) {
+            return 0;
+        }
+        int position = search(id);
+        return position >= 0 ? position : -position - 1;
+    }
+
+    /**
+     * 获取消息总数
+     */
+    public int getCount() {
+        return mCount;
+    }
+
+    /**
+     * 获取没有过期的录音文件总大小（随追加、过期累计，不扫描目录）
+     *
+     * @return 字节数
+     */
+    public long getTotalBytes() {
+        return mLog == null ? 0 : mIndex.getLong(INDEX_TOTAL_BYTES_OFFSET);
+    }
+
+    /**
+     * 获取位置对应消息的标志（只读取索引）
+     *
+     * @return FLAG_XXX
+     */
+    public int getFlags(int position) {
+        return mIndex.getInt(entryOffset(position) + ENTRY_FLAGS);
+    }
+
+    /**
+     * 获取位置对应消息的录音文件大小（只读取索引）
+     */
+    public int getFileSize(int position) {
+        return mIndex.getInt(entryOffset(position) + ENTRY_FILE_SIZE);
+    }
+
+    /**
+     * 获取位置对应消息的最近播放时间（只读取索引）
+     *
+     * @return 时间戳（单位：ms），没有播放过时为0
+     */
+    public long getLastPlayedTime(int position) {
+        return mIndex.getLong(entryOffset(position) + ENTRY_LAST_PLAYED);
+    }
+
+    @Override
+    public void markPlayed(long id, long time) {
+        if (mLog == null) {
+            return;
+        }
+        int position = search(id);
+        if (position < 0) {
+            return;
+        }
+        int entry = entryOffset(position);
+        int flags = mIndex.getInt(entry + ENTRY_FLAGS);
+        try {
+            markDirty();
+            mIndex.putLong(entry + ENTRY_LAST_PLAYED, time);
+            if ((flags & FLAG_PLAYED) == 0) {
+                flags |= FLAG_PLAYED;
+                mIndex.putInt(entry + ENTRY_FLAGS, flags);
+                appendUpdate(entry);
+            }
+            if (++mPendingCount >= SYNC_BATCH) {
+                flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 标记消息的录音文件已被清理（不删除文件，不同步），从文件总大小中减去
+     *
+     * @param position 位置
+     * @return 是否标记，已经过期时返回false
+     */
+    public boolean markExpired(int position) {
+        int entry = entryOffset(position);
+        int flags = mIndex.getInt(entry + ENTRY_FLAGS);
+        if ((flags & FLAG_EXPIRED) != 0) {
+            return false;
+        }
+        flags |= FLAG_EXPIRED;
+        try {
+            markDirty();
+            mIndex.putInt(entry + ENTRY_FLAGS, flags);
+            mIndex.putLong(INDEX_TOTAL_BYTES_OFFSET,
+                    Math.max(0, getTotalBytes() - mIndex.getInt(entry + ENTRY_FILE_SIZE)));
+            appendUpdate(entry);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return true;
+    }
+
+    /**
+     * 标记消息的录音文件已转码（不同步），更新文件大小和文件总大小
+     *
+     * @param position 位置
+     * @param fileSize 转码后的文件大小，没有转码时传入原来的大小
+     */
+    public void markCompacted(int position, long fileSize) {
+        int entry = entryOffset(position);
+        int flags = mIndex.getInt(entry + ENTRY_FLAGS) | FLAG_COMPACTED;
+        int size = (int) Math.min(Integer.MAX_VALUE, fileSize);
+        try {
+            markDirty();
+            if ((flags & FLAG_EXPIRED) == 0) {
+                mIndex.putLong(INDEX_TOTAL_BYTES_OFFSET,
+                        Math.max(0, getTotalBytes() - mIndex.getInt(entry + ENTRY_FILE_SIZE) + size));
+            }
+            mIndex.putInt(entry + ENTRY_FILE_SIZE, size);
+            mIndex.putInt(entry + ENTRY_FLAGS, flags);
+            appendUpdate(entry);
+            if (++mPendingCount >= SYNC_BATCH) {
+                flush();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * 查找消息的位置（按id二分查找索引）
+     *
+     * @param id 消息id
+     * @return 位置，没有找到时返回-1
+     */
+    public int indexOf(long id) {
+        if (mLog == null) {
+            return -1;
+        }
+        int position = search(id);
+        return position >= 0 ? position : -1;
+    }
+
+    /**
+     * 打开日志，截掉末尾写了一半的记录
+     *
+     * @return 是否已经从录音目录导入
+     */
+    private boolean openLog() throws IOException {
+        long size = mLog.size();
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        if (size >= LOG_HEADER_SIZE) {
+            readFully(mLog, header, 0);
+        }
+        if (size < LOG_HEADER_SIZE || header.getInt(0) != LOG_MAGIC || header.getInt(4) != LOG_VERSION
+                || header.getInt(8) != RECORD_SIZE || (header.getInt(LOG_FLAGS_OFFSET) & LOG_FLAG_MIGRATED) == 0) {
+            //新建、无法识别或导入没有完成，重新开始
+            resetLog();
+            return false;
+        }
+        long end = LOG_HEADER_SIZE + (size - LOG_HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+        while (end > LOG_HEADER_SIZE && !readRecord(end - RECORD_SIZE)) {
+            end -= RECORD_SIZE;
+        }
+        if (end != size) {
+            mLog.truncate(end);
+            mLog.force(false);
+        }
+        mLogSize = end;
+        return true;
+    }
+
+    private void resetLog() throws IOException {
+        mLog.truncate(0);
+        ByteBuffer header = ByteBuffer.allocate(LOG_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(LOG_MAGIC).putInt(LOG_VERSION).putInt(RECORD_SIZE).putInt(0).flip();
+        writeFully(mLog, header, 0);
+        mLog.force(false);
+        mLogSize = LOG_HEADER_SIZE;
+    }
+
+    /**
+     * 映射索引，只读取文件头
+     *
+     * @return 索引是否与日志一致
+     */
+    private boolean openIndex() throws IOException {
+        long size = mIndexChannel.size();
+        int capacity = (int) Math.max(INITIAL_INDEX_CAPACITY,
+                (size - INDEX_HEADER_SIZE) / INDEX_ENTRY_SIZE);
+        mapIndex(capacity);
+        int count = mIndex.getInt(INDEX_COUNT_OFFSET);
+        if (size < INDEX_HEADER_SIZE || mIndex.getInt(0) != INDEX_MAGIC || mIndex.getInt(4) != INDEX_VERSION
+                || mIndex.getInt(INDEX_STATE_OFFSET) != INDEX_STATE_CLEAN
+                || mIndex.getLong(INDEX_LOG_SIZE_OFFSET) != mLogSize
+                || count < 0 || count > capacity) {
+            return false;
+        }
+        mCount = count;
+        isClean = true;
+        return true;
+    }
+
+    private void mapIndex(int capacity) throws IOException {
+        mIndex = mIndexChannel.map(FileChannel.MapMode.READ_WRITE, 0,
+                INDEX_HEADER_SIZE + (long) capacity * INDEX_ENTRY_SIZE);
+        mIndex.order(ByteOrder.LITTLE_ENDIAN);
+        mIndexCapacity = capacity;
+    }
+
+    /**
+     * 从日志重建索引（上次没有正常同步时才会执行）
+     */
+    private void rebuildIndex() throws IOException {
+        int logCount = (int) ((mLogSize - LOG_HEADER_SIZE) / RECORD_SIZE);
+        final long[] ids = new long[logCount];
+        int[] fileSizes = new int[logCount];
+        int[] flags = new int[logCount];
+        Integer[] order = new Integer[logCount];
+        ByteBuffer batch = ByteBuffer.allocate(RECORD_SIZE * REBUILD_BATCH).order(ByteOrder.LITTLE_ENDIAN);
+        int valid = 0;
+        for (int start = 0; start < logCount; start += REBUILD_BATCH) {
+            int count = Math.min(REBUILD_BATCH, logCount - start);
+            batch.clear();
+            batch.limit(count * RECORD_SIZE);
+            readFully(mLog, batch, LOG_HEADER_SIZE + (long) start * RECORD_SIZE);
+            for (int i = 0; i < count; i++) {
+                int offset = i * RECORD_SIZE;
+                mCrc.reset();
+                mCrc.update(batch.array(), offset, CRC_OFFSET);
+                if ((int) mCrc.getValue() == batch.getInt(offset + CRC_OFFSET)) {
+                    ids[start + i] = batch.getLong(offset);
+                    flags[start + i] = batch.getInt(offset + 20);
+                    fileSizes[start + i] = batch.getInt(offset + 24);
+                    order[valid++] = start + i;
+                }
+            }
+        }
+        //稳定排序，id重复时保留后写入的记录
+        Arrays.sort(order, 0, valid, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                long idA = ids[a];
+                long idB = ids[b];
+                return idA < idB ? -1 : (idA == idB ? 0 : 1);
+            }
+        });
+        int count = 0;
+        for (int i = 0; i < valid; i++) {
+            if (i + 1 < valid && ids[order[i + 1]] == ids[order[i]]) {
+                continue;
+            }
+            order[count++] = order[i];
+        }
+        mapIndex(Math.max(INITIAL_INDEX_CAPACITY, Integer.highestOneBit(Math.max(1, count)) * 2));
+        long totalBytes = 0;
+        for (int i = 0; i < count; i++) {
+            int record = order[i];
+            putEntry(entryOffset(i), ids[record], LOG_HEADER_SIZE + (long) record * RECORD_SIZE,
+                    0, fileSizes[record], flags[record]);
+            if ((flags[record] & FLAG_EXPIRED) == 0) {
+                totalBytes += fileSizes[record];
+            }
+        }
+        mIndex.putLong(INDEX_TOTAL_BYTES_OFFSET, totalBytes);
+        mIndex.putInt(0, INDEX_MAGIC);
+        mIndex.putInt(4, INDEX_VERSION);
+        mIndex.putInt(INDEX_COUNT_OFFSET, count);
+        mIndex.putInt(INDEX_STATE_OFFSET, INDEX_STATE_DIRTY);
+        mCount = count;
+        isClean = false;
+        flush();
+    }
+
+    /**
+     * 从录音目录重建消息记录（第一次打开或日志损坏时执行），并行探测文件头
+     * <p>
+     * 探测失败时不写入任何记录、不设置导入完成标志，下次打开时重新导入
+     */
+    private void migrate() throws IOException {
+        RecordDirIndexer indexer = RecordDirIndexer.scan(mDir, mOnRebuildProgressListener);
+        for (int i = 0; i < indexer.count; i++) {
+            appendRecord(indexer.ids[i], indexer.times[i], indexer.durationsMs[i], 0, indexer.fileSizes[i]);
+        }
+        flush();
+        ByteBuffer flags = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+        flags.putInt(0, LOG_FLAG_MIGRATED);
+        writeFully(mLog, flags, LOG_FLAGS_OFFSET);
+        mLog.force(false);
+    }
+
+    /**
+     * 写入记录并插入索引（不同步）
+     *
+     * @return 是否写入，id已存在时返回false
+     */
+    private boolean appendRecord(long id, long time, long durationMs, int flags, long fileSize)
+            throws IOException {
+        int position = search(id);
+        if (position >= 0) {
+            return false;
+        }
+        position = -position - 1;
+        markDirty();
+        mRecord.clear();
+        mRecord.putLong(id)
+                .putLong(time)
+                .putInt((int) Math.max(0, Math.min(Integer.MAX_VALUE, durationMs)))
+                .putInt(flags)
+                .putInt((int) Math.min(Integer.MAX_VALUE, fileSize));
+        mCrc.reset();
+        mCrc.update(mRecord.array(), 0, CRC_OFFSET);
+        mRecord.putInt((int) mCrc.getValue()).flip();
+        long offset = mLogSize;
+        writeFully(mLog, mRecord, offset);
+        mLogSize += RECORD_SIZE;
+        insertEntry(position, id, offset, mRecord.getInt(24), flags);
+        if ((flags & FLAG_EXPIRED) == 0) {
+            mIndex.putLong(INDEX_TOTAL_BYTES_OFFSET, getTotalBytes() + mRecord.getInt(24));
+        }
+        return true;
+    }
+
+    /**
+     * 第一次修改前把索引标记为未同步，并立即写入
+     */
+    private void markDirty() {
+        if (isClean) {
+            mIndex.putInt(INDEX_STATE_OFFSET, INDEX_STATE_DIRTY);
+            mIndex.force();
+            isClean = false;
+        }
+    }
+
+    private void insertEntry(int position, long id, long offset, int fileSize, int flags) throws IOException {
+        if (mCount == mIndexCapacity) {
+            mapIndex(mIndexCapacity * 2);
+        }
+        //消息id是开始录音的时间，通常追加在末尾，不需要移动
+        for (int i = mCount - 1; i >= position; i--) {
+            int from = entryOffset(i);
+            for (int j = 0; j < INDEX_ENTRY_SIZE; j += 8) {
+                mIndex.putLong(from + INDEX_ENTRY_SIZE + j, mIndex.getLong(from + j));
+            }
+        }
+        putEntry(entryOffset(position), id, offset, 0, fileSize, flags);
+        mCount++;
+        mIndex.putInt(INDEX_COUNT_OFFSET, mCount);
+    }
+
+    private void putEntry(int entry, long id, long offset, long lastPlayed, int fileSize, int flags) {
+        mIndex.putLong(entry, id);
+        mIndex.putLong(entry + ENTRY_LOG_OFFSET, offset);
+        mIndex.putLong(entry + ENTRY_LAST_PLAYED, lastPlayed);
+        mIndex.putInt(entry + ENTRY_FILE_SIZE, fileSize);
+        mIndex.putInt(entry + ENTRY_FLAGS, flags);
+    }
+
+    /**
+     * 按索引条目中的标志和录音文件大小追加一条新记录（不改写原来的记录），索引改为指向新记录
+     */
+    private void appendUpdate(int entry) throws IOException {
+        long id = mIndex.getLong(entry);
+        if (!readRecord(mIndex.getLong(entry + ENTRY_LOG_OFFSET)) || mRecord.getLong(0) != id) {
+            //原来的记录损坏时只保留id（与加载时相同）
+            mRecord.putLong(0, id).putLong(8, id).putInt(16, 0);
+        }
+        mRecord.putInt(20, mIndex.getInt(entry + ENTRY_FLAGS));
+        mRecord.putInt(24, mIndex.getInt(entry + ENTRY_FILE_SIZE));
+        mCrc.reset();
+        mCrc.update(mRecord.array(), 0, CRC_OFFSET);
+        mRecord.putInt(CRC_OFFSET, (int) mCrc.getValue());
+        mRecord.clear();
+        long offset = mLogSize;
+        writeFully(mLog, mRecord, offset);
+        mLogSize += RECORD_SIZE;
+        mIndex.putLong(entry + ENTRY_LOG_OFFSET, offset);
+    }
+
+    /**
+     * 按id二分查找索引
+     *
+     * @return 位置，没有找到时返回 -(插入位置 + 1)
+     */
+    private int search(long id) {
+        int low = 0;
+        int high = mCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            long midId = mIndex.getLong(entryOffset(mid));
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -(low + 1);
+    }
+
+    /**
+     * 读取一条记录到mRecord
+     *
+     * @return 记录是否完整（CRC正确）
+     */
+    private boolean readRecord(long offset) throws IOException {
+        mRecord.clear();
+        if (!readFully(mLog, mRecord, offset)) {
+            return false;
+        }
+        mCrc.reset();
+        mCrc.update(mRecord.array(), 0, CRC_OFFSET);
+        return (int) mCrc.getValue() == mRecord.getInt(CRC_OFFSET);
+    }
+
+    private static int entryOffset(int position) {
+        return INDEX_HEADER_SIZE + position * INDEX_ENTRY_SIZE;
+    }
+
+    /**
+     * @return 是否读满，到达文件末尾时返回false
+     */
+    private static boolean readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position() - start) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        int start = buffer.position();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer, position + buffer.position() - start);
+        }
+    }
+
+    private void close() {
+        try {
+            if (mLog != null) {
+                mLog.close();
+            }
+            if (mIndexChannel != null) {
+                mIndexChannel.close();
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        mLog = null;
+        mIndexChannel = null;
+        mIndex = null;
+        mCount = 0;
+    }
+
+    /**
+     * 从录音目录重建的进度监听
+     */
+    public interface OnRebuildProgressListener {
+        /**
+         * 重建进度（文件读写线程中回调）
+         *
+         * @param done  已探测的文件数
+         * @param total 文件总数
+         */
+        void onRebuildProgress(int done, int total);
+    }
+}
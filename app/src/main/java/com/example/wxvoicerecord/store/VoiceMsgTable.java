@@ -0,0 +1,237 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import java.util.Arrays;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 消息表（按列保存在基本类型数组中，按id升序追加）
+ * <p>
+ * 每条消息只占id(8) 时间(8) 时长(4) 标志(1)共21字节，录音文件路径由id推导，不保存字符串
+ * （只有调用 {@link VoiceMsg#setPath(String)} 修改过的行才保存路径）；
+ * 按id查找在连续的long[]上二分查找。
+ * 需要 {@link VoiceMsg} 的地方通过 {@link #get(int)} 取得只引用表中一行的视图，
+ * 视图的所有修改都写回表中；视图按行号缓存少量，重复获取同一行不分配内存
+ */
+public final class VoiceMsgTable {
+    /**
+     * 缓存的视图数（2的幂）
+     */
+    private static final int VIEW_CACHE_SIZE = 64;
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private final String mDir;
+    private long[] mIds;
+    private long[] mTimes;
+    private int[] mDurationsMs;
+    private byte[] mFlags;
+    /**
+     * 修改过的录音文件路径（没有修改过时为null，按需创建）
+     */
+    private String[] mPaths;
+    private int mSize;
+    private Row[] mViews;
+
+    /**
+     * @param dir      录音文件目录
+     * @param capacity 初始容量
+     */
+    public VoiceMsgTable(String dir, int capacity) {
+        mDir = dir;
+        capacity = Math.max(1, capacity);
+        mIds = new long[capacity];
+        mTimes = new long[capacity];
+        mDurationsMs = new int[capacity];
+        mFlags = new byte[capacity];
+    }
+
+    /**
+     * 在末尾追加一条消息
+     *
+     * @param id         消息id（不小于已有的id）
+     * @param time       时间戳（单位：ms）
+     * @param durationMs 时长（单位：ms）
+     * @param flags      VoiceMsgStore.FLAG_XXX
+     */
+    public void add(long id, long time, int durationMs, int flags) {
+        if (mSize == mIds.length) {
+            int capacity = Math.max(DEFAULT_CAPACITY, mSize * 2);
+            mIds = Arrays.copyOf(mIds, capacity);
+            mTimes = Arrays.copyOf(mTimes, capacity);
+            mDurationsMs = Arrays.copyOf(mDurationsMs, capacity);
+            mFlags = Arrays.copyOf(mFlags, capacity);
+            if (mPaths != null) {
+                mPaths = Arrays.copyOf(mPaths, capacity);
+            }
+        }
+        mIds[mSize] = id;
+        mTimes[mSize] = time;
+        mDurationsMs[mSize] = durationMs;
+        mFlags[mSize] = (byte) flags;
+        mSize++;
+    }
+
+    /**
+     * 追加一条消息（时长按秒保存，路径与由id推导的不同时保存路径）
+     */
+    public void add(VoiceMsg msg) {
+        add(msg.getId(), msg.getTime(), msg.getDuration() * 1000,
+                (msg.isPlayed() ? VoiceMsgStore.FLAG_PLAYED : 0) | (msg.isExpired() ? VoiceMsgStore.FLAG_EXPIRED : 0));
+        String path = msg.getPath();
+        if (path != null && !path.equals(getPath(mSize - 1))) {
+            setPath(mSize - 1, path);
+        }
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public long getId(int index) {
+        return mIds[index];
+    }
+
+    public long getTime(int index) {
+        return mTimes[index];
+    }
+
+    public int getDurationMs(int index) {
+        return mDurationsMs[index];
+    }
+
+    public int getFlags(int index) {
+        return mFlags[index];
+    }
+
+    /**
+     * 获取录音文件路径（没有修改过时由id推导，每次都会拼接字符串）
+     */
+    public String getPath(int index) {
+        if (mPaths != null && mPaths[index] != null) {
+            return mPaths[index];
+        }
+        return DefaultRecordConfig.getRecordFilePath(mDir, mIds[index]);
+    }
+
+    /**
+     * 修改录音文件路径
+     *
+     * @param path 路径，为null时恢复为由id推导
+     */
+    public void setPath(int index, String path) {
+        if (mPaths == null) {
+            if (path == null) {
+                return;
+            }
+            mPaths = new String[mIds.length];
+        }
+        mPaths[index] = path;
+    }
+
+    /**
+     * 按id二分查找
+     *
+     * @return 行号，没有找到时返回-1
+     */
+    public int indexOfId(long id) {
+        int index = Arrays.binarySearch(mIds, 0, mSize, id);
+        return index >= 0 ? index : -1;
+    }
+
+    /**
+     * 获取一行的视图
+     *
+     * @param index 行号
+     * @return 引用这一行的消息，修改会写回表中
+     */
+    public VoiceMsg get(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("index=" + index + ", size=" + mSize);
+        }
+        if (mViews == null) {
+            mViews = new Row[Math.min(VIEW_CACHE_SIZE, Integer.highestOneBit(Math.max(1, mIds.length - 1)) << 1)];
+        }
+        int slot = index & (mViews.length - 1);
+        Row row = mViews[slot];
+        if (row == null || row.index != index) {
+            row = new Row(this, index);
+            mViews[slot] = row;
+        }
+        return row;
+    }
+
+    /**
+     * 表中一行的视图（不保存数据，读写都直接访问表中的列）
+     */
+    private static final class Row extends VoiceMsg {
+        private final VoiceMsgTable table;
+        private final int index;
+
+        Row(VoiceMsgTable table, int index) {
+            super(table.mIds[index], null, 0, 0);
+            this.table = table;
+            this.index = index;
+        }
+
+        @Override
+        public long getTime() {
+            return table.mTimes[index];
+        }
+
+        @Override
+        public void setTime(long time) {
+            table.mTimes[index] = time;
+        }
+
+        @Override
+        public String getPath() {
+            return table.getPath(index);
+        }
+
+        @Override
+        public void setPath(String path) {
+            table.setPath(index, path);
+        }
+
+        @Override
+        public int getDuration() {
+            return RecordDirSource.toSeconds(table.mDurationsMs[index]);
+        }
+
+        @Override
+        public void setDuration(int duration) {
+            table.mDurationsMs[index] = duration * 1000;
+        }
+
+        @Override
+        public boolean isPlayed() {
+            return (table.mFlags[index] & VoiceMsgStore.FLAG_PLAYED) != 0;
+        }
+
+        @Override
+        public void setPlayed(boolean played) {
+            setFlag(VoiceMsgStore.FLAG_PLAYED, played);
+        }
+
+        @Override
+        public boolean isExpired() {
+            return (table.mFlags[index] & VoiceMsgStore.FLAG_EXPIRED) != 0;
+        }
+
+        @Override
+        public void setExpired(boolean expired) {
+            setFlag(VoiceMsgStore.FLAG_EXPIRED, expired);
+        }
+
+        private void setFlag(int flag, boolean value) {
+            if (value) {
+                table.mFlags[index] |= flag;
+            } else {
+                table.mFlags[index] &= ~flag;
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.wxvoicerecord.store;
+
+import java.util.Calendar;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 消息时间索引（文件读写线程中使用）
+ * <p>
+ * 消息按id（开始录音的时间）排序，按时间查找直接在数据源的id上二分查找，不加载消息；
+ * 每天第一条消息的位置按天直接映射缓存，按天统计时每天只查找一次。
+ * 追加消息后需要调用 {@link #invalidate()}
+ */
+public final class VoiceMsgTimeIndex {
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    /**
+     * 缓存的天数（2的幂）
+     */
+    private static final int CAPACITY = 64;
+
+    private final IVoiceMsgSource mSource;
+    private final Calendar mCalendar = Calendar.getInstance();
+    private final long[] mDays = new long[CAPACITY];
+    private final int[] mDayPositions = new int[CAPACITY];
+    private final boolean[] hasDayPositions = new boolean[CAPACITY];
+
+    public VoiceMsgTimeIndex(IVoiceMsgSource source) {
+        mSource = source;
+    }
+
+    /**
+     * 查找时间之后的第一条消息
+     *
+     * @param time 时间戳（单位：ms）
+     * @return 位置，都早于这个时间时返回消息总数
+     */
+    public int positionOf(long time) {
+        return mSource.positionOf(time);
+    }
+
+    /**
+     * 查找某天的第一条消息
+     *
+     * @param time 这一天中的任意时间
+     * @return 位置，这一天没有消息时为之后第一条消息的位置
+     */
+    public int positionOfDay(long time) {
+        long day = startOfDay(time);
+        int index = (int) ((day / DAY) & (CAPACITY - 1));
+        if (!hasDayPositions[index] || mDays[index] != day) {
+            mDays[index] = day;
+            mDayPositions[index] = mSource.positionOf(day);
+            hasDayPositions[index] = true;
+        }
+        return mDayPositions[index];
+    }
+
+    /**
+     * 统计时间段内的消息数
+     *
+     * @param from 开始时间（包含）
+     * @param to   结束时间（不包含）
+     */
+    public int countBetween(long from, long to) {
+        return Math.max(0, mSource.positionOf(to) - mSource.positionOf(from));
+    }
+
+    /**
+     * 统计某天的消息数
+     *
+     * @param time 这一天中的任意时间
+     */
+    public int countOfDay(long time) {
+        return positionOfDay(nextDay(startOfDay(time))) - positionOfDay(time);
+    }
+
+    /**
+     * 按天统计时间段内的消息数（只列出有消息的天），每天只查找一次
+     *
+     * @param from   开始时间（包含）
+     * @param to     结束时间（不包含）
+     * @param days   输出：每天0点的时间
+     * @param counts 输出：每天的消息数
+     * @return 输出的天数，最多为days的长度
+     */
+    public int countPerDay(long from, long to, long[] days, int[] counts) {
+        int position = mSource.positionOf(from);
+        int end = mSource.positionOf(to);
+        int size = 0;
+        while (position < end && size < days.length && size < counts.length) {
+            long day = startOfDay(mSource.getId(position));
+            int next = Math.min(end, positionOfDay(nextDay(day)));
+            days[size] = day;
+            counts[size] = next - position;
+            size++;
+            position = next;
+        }
+        return size;
+    }
+
+    /**
+     * 消息变化后清空缓存
+     */
+    public void invalidate() {
+        for (int i = 0; i < CAPACITY; i++) {
+            hasDayPositions[i] = false;
+        }
+    }
+
+    /**
+     * @return 这一天0点（本地时间）
+     */
+    private long startOfDay(long time) {
+        mCalendar.setTimeInMillis(time);
+        mCalendar.set(Calendar.HOUR_OF_DAY, 0);
+        mCalendar.set(Calendar.MINUTE, 0);
+        mCalendar.set(Calendar.SECOND, 0);
+        mCalendar.set(Calendar.MILLISECOND, 0);
+        return mCalendar.getTimeInMillis();
+    }
+
+    /**
+     * @return 下一天0点（本地时间，考虑夏令时）
+     */
+    private long nextDay(long day) {
+        mCalendar.setTimeInMillis(day);
+        mCalendar.add(Calendar.DAY_OF_MONTH, 1);
+        return startOfDay(mCalendar.getTimeInMillis());
+    }
+}
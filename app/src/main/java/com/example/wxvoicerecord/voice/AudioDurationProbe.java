@@ -0,0 +1,195 @@
+package com.example.wxvoicerecord.voice;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 音频时长探测
+ * <p>
+ * 直接解析文件头和帧结构计算时长，不创建解码器，精确到毫秒：
+ * <p>
+ * WAV：根据fmt块和data块（或fact块）的长度计算
+ * <p>
+ * AMR-NB/AMR-WB：根据每帧TOC字节中的帧类型逐帧跳过计数，每帧20ms
+ * <p>
+ * 涉及文件读取，不要在主线程调用
+ */
+public final class AudioDurationProbe {
+    /**
+     * 无法识别的文件
+     */
+    public static final long UNKNOWN = -1;
+    /**
+     * WAV格式：PCM
+     */
+    public static final int WAVE_FORMAT_PCM = 0x0001;
+    /**
+     * WAV格式：IMA ADPCM
+     */
+    public static final int WAVE_FORMAT_IMA_ADPCM = 0x0011;
+
+    private static final byte[] AMR_NB_MAGIC = {'#', '!', 'A', 'M', 'R', '\n'};
+    private static final byte[] AMR_WB_MAGIC = {'#', '!', 'A', 'M', 'R', '-', 'W', 'B', '\n'};
+    /**
+     * AMR-NB各帧类型对应的帧长度（不含TOC字节）
+     */
+    private static final int[] AMR_NB_FRAME_SIZES = {12, 13, 15, 17, 19, 20, 26, 31, 5, 0, 0, 0, 0, 0, 0, 0};
+    /**
+     * AMR-WB各帧类型对应的帧长度（不含TOC字节）
+     */
+    private static final int[] AMR_WB_FRAME_SIZES = {17, 23, 32, 36, 40, 46, 50, 58, 60, 5, 0, 0, 0, 0, 0, 0};
+    /**
+     * AMR每帧时长（单位：ms）
+     */
+    private static final int AMR_FRAME_DURATION = 20;
+
+    private AudioDurationProbe() {
+    }
+
+    /**
+     * 获取音频时长
+     *
+     * @param path 文件路径
+     * @return 时长（单位：ms），无法识别时返回 {@link #UNKNOWN}
+     */
+    public static long getDurationMs(String path) {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r")) {
+            byte[] head = new byte[12];
+            int read = file.read(head);
+            if (read >= 12 && matches(head, 0, "RIFF") && matches(head, 8, "WAVE")) {
+                return probeWav(file);
+            }
+            if (read >= AMR_WB_MAGIC.length && startsWith(head, AMR_WB_MAGIC)) {
+                return probeAmr(path, AMR_WB_MAGIC.length, AMR_WB_FRAME_SIZES);
+            }
+            if (read >= AMR_NB_MAGIC.length && startsWith(head, AMR_NB_MAGIC)) {
+                return probeAmr(path, AMR_NB_MAGIC.length, AMR_NB_FRAME_SIZES);
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return UNKNOWN;
+    }
+
+    /**
+     * 解析WAV的各个块
+     * <p>
+     * data块长度为0或超出文件大小时（录音中途进程被杀），以文件实际剩余长度为准
+     */
+    private static long probeWav(RandomAccessFile file) throws IOException {
+        byte[] chunk = new byte[20];
+        int format = 0;
+        int channels = 0;
+        int sampleRate = 0;
+        int byteRate = 0;
+        int blockAlign = 0;
+        long factSamples = -1;
+        long fileLength = file.length();
+        long position = 12;
+        while (position + 8 <= fileLength) {
+            file.seek(position);
+            file.readFully(chunk, 0, 8);
+            long chunkSize = readInt(chunk, 4) & 0xFFFFFFFFL;
+            long bodyStart = position + 8;
+            if (matches(chunk, 0, "fmt ")) {
+                file.readFully(chunk, 0, 16);
+                format = readShort(chunk, 0);
+                channels = readShort(chunk, 2);
+                sampleRate = readInt(chunk, 4);
+                byteRate = readInt(chunk, 8);
+                blockAlign = readShort(chunk, 12);
+            } else if (matches(chunk, 0, "fact")) {
+                file.readFully(chunk, 0, 4);
+                factSamples = readInt(chunk, 0) & 0xFFFFFFFFL;
+            } else if (matches(chunk, 0, "data")) {
+                long available = fileLength - bodyStart;
+                long dataSize = chunkSize == 0 || chunkSize > available ? available : chunkSize;
+                return computeWavDuration(format, channels, sampleRate, byteRate, blockAlign,
+                        factSamples, dataSize);
+            }
+            //块长度为奇数时有一个填充字节
+            position = bodyStart + chunkSize + (chunkSize & 1);
+        }
+        return UNKNOWN;
+    }
+
+    private static long computeWavDuration(int format, int channels, int sampleRate, int byteRate,
+                                           int blockAlign, long factSamples, long dataSize) {
+        if (sampleRate <= 0) {
+            return UNKNOWN;
+        }
+        if (format == WAVE_FORMAT_IMA_ADPCM && blockAlign > 0 && channels > 0) {
+            if (factSamples >= 0) {
+                return factSamples * 1000 / sampleRate;
+            }
+            //每个块：4字节块头（每声道）携带1个采样，其余每字节2个采样
+            long samplesPerBlock = (blockAlign - 4L * channels) * 2 / channels + 1;
+            long samples = dataSize / blockAlign * samplesPerBlock;
+            long remain = dataSize % blockAlign;
+            if (remain > 4L * channels) {
+                samples += (remain - 4L * channels) * 2 / channels + 1;
+            }
+            return samples * 1000 / sampleRate;
+        }
+        if (byteRate <= 0) {
+            return UNKNOWN;
+        }
+        return dataSize * 1000 / byteRate;
+    }
+
+    /**
+     * 逐帧读取TOC字节，跳过帧数据，统计帧数
+     */
+    private static long probeAmr(String path, int headerSize, int[] frameSizes) throws IOException {
+        long frames = 0;
+        byte[] buffer = new byte[8 * 1024];
+        try (InputStream in = new FileInputStream(path)) {
+            //下一个TOC字节相对当前缓冲区起始位置的偏移
+            long next = headerSize;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                while (next < read) {
+                    int toc = buffer[(int) next];
+                    int frameType = (toc >> 3) & 0x0F;
+                    frames++;
+                    next += 1 + frameSizes[frameType];
+                }
+                next -= read;
+            }
+        }
+        return frames * AMR_FRAME_DURATION;
+    }
+
+    private static boolean matches(byte[] buffer, int offset, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (buffer[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean startsWith(byte[] buffer, byte[] magic) {
+        for (int i = 0; i < magic.length; i++) {
+            if (buffer[i] != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF)
+                | (buffer[offset + 1] & 0xFF) << 8
+                | (buffer[offset + 2] & 0xFF) << 16
+                | (buffer[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+    }
+}
@@ -0,0 +1,673 @@
+package com.example.wxvoicerecord.voice;
+
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTrack;
+import android.media.MediaPlayer;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.os.SystemClock;
+
+import com.example.wxvoicerecord.voice.codec.ImaAdpcm;
+import com.example.wxvoicerecord.voice.codec.ImaAdpcmDecoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 低延迟语音播放（只支持本地录制的WAV：PCM 8/16bit、IMA ADPCM）
+ * <p>
+ * 录音文件通过FileChannel.map映射到内存，在常驻的播放线程中直接写入AudioTrack：
+ * PCM直接从映射的内存写入，IMA ADPCM按块解码到预先分配的缓冲区后写入，不经过MediaPlayer的准备流程。
+ * AudioTrack在格式不变时一直复用，连续播放时数据直接接续写入，没有间隔。
+ * IMA ADPCM解码结果保存在 {@link PcmCache} 中，重复播放时直接从缓存写入
+ * <p>
+ * 播放状态使用 {@link MediaManager} 的STATE_XXX
+ */
+public class AudioTrackPlayer implements IVoicePlayer {
+    /**
+     * 每次写入AudioTrack的数据时长（单位：ms）
+     */
+    private static final int CHUNK_DURATION_MS = 20;
+    /**
+     * 等待播放完成时查询播放位置的间隔（单位：ms）
+     */
+    private static final int DRAIN_POLL_INTERVAL = 5;
+
+    public volatile static AudioTrackPlayer instance;
+
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 保护播放请求和AudioTrack（主线程暂停、停止时也会操作AudioTrack）
+     */
+    private final Object mLock = new Object();
+
+    //----------主线程----------
+    private int mState = MediaManager.STATE_IDLE;
+    /**
+     * 正在播放（或正在准备）的音频路径
+     */
+    private String mPlayingPath = "";
+    private OnPlayListener mOnPlayListener;
+
+    //----------播放请求（mLock）----------
+    private final ArrayList<String> mRequestQueue = new ArrayList<>();
+    private long mRequestTime;
+    /**
+     * 播放请求序号，开始新的播放或停止时递增
+     */
+    private volatile int mGeneration;
+    private volatile boolean isPaused;
+    private volatile boolean isQuit;
+    private Thread mThread;
+
+    //----------播放线程----------
+    private final ArrayList<String> mQueue = new ArrayList<>();
+    private final WavFormat mFormat = new WavFormat();
+    private final PcmCache mCache = PcmCache.getInstance();
+    private AudioTrack mTrack;
+    private int mTrackSampleRate;
+    private int mTrackChannelCount;
+    private int mTrackEncoding;
+    private ImaAdpcmDecoder mDecoder;
+    /**
+     * ADPCM解码缓冲区
+     */
+    private short[] mPcm = new short[0];
+    /**
+     * 本次播放已写入的帧数
+     */
+    private long mFramesWritten;
+    /**
+     * 本次播放开始时AudioTrack的播放位置
+     */
+    private long mHeadBase;
+    /**
+     * 等待播放位置越过的切换点（按写入顺序）：之前的一条结束、下一条开始
+     */
+    private final ArrayDeque<Boundary> mBoundaries = new ArrayDeque<>();
+    private long mSessionRequestTime;
+
+    private AudioTrackPlayer() {
+    }
+
+    public static AudioTrackPlayer getInstance() {
+        if (instance == null) {
+            synchronized (AudioTrackPlayer.class) {
+                if (instance == null) {
+                    instance = new AudioTrackPlayer();
+                }
+            }
+        }
+        return instance;
+    }
+
+    @Override
+    public void playVoice(String voicePath, OnPlayListener listener) {
+        playQueue(Collections.singletonList(voicePath), listener);
+    }
+
+    @Override
+    public void playQueue(List<String> voicePaths, OnPlayListener listener) {
+        reset();
+        if (voicePaths.isEmpty()) {
+            return;
+        }
+        mOnPlayListener = listener;
+        mPlayingPath = voicePaths.get(0);
+        mState = MediaManager.STATE_PREPARING;
+        synchronized (mLock) {
+            mRequestQueue.addAll(voicePaths);
+            mRequestTime = SystemClock.uptimeMillis();
+            isPaused = false;
+            mGeneration++;
+        }
+        if (mThread == null) {
+            mThread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    playbackLoop();
+                }
+            }, "VoicePlayback");
+            mThread.setDaemon(true);
+            mThread.start();
+        } else {
+            LockSupport.unpark(mThread);
+        }
+    }
+
+    @Override
+    public void pause() {
+        if (mState != MediaManager.STATE_PLAYING) {
+            return;
+        }
+        synchronized (mLock) {
+            isPaused = true;
+            if (mTrack != null) {
+                mTrack.pause();
+            }
+        }
+        mState = MediaManager.STATE_PAUSED;
+    }
+
+    @Override
+    public void resume() {
+        if (mState != MediaManager.STATE_PAUSED) {
+            return;
+        }
+        synchronized (mLock) {
+            isPaused = false;
+            if (mTrack != null) {
+                mTrack.play();
+            }
+        }
+        mState = MediaManager.STATE_PLAYING;
+    }
+
+    @Override
+    public void reset() {
+        synchronized (mLock) {
+            mGeneration++;
+            mRequestQueue.clear();
+            isPaused = false;
+            //立即静音，播放线程随后退出写入循环
+            if (mTrack != null) {
+                mTrack.pause();
+                mTrack.flush();
+            }
+        }
+        int state = mState;
+        String path = mPlayingPath;
+        OnPlayListener listener = mOnPlayListener;
+        mState = MediaManager.STATE_IDLE;
+        mPlayingPath = "";
+        mOnPlayListener = null;
+        if (state != MediaManager.STATE_IDLE && state != MediaManager.STATE_COMPLETED
+                && listener != null) {
+            listener.onPlayStop(path, false);
+        }
+    }
+
+    @Override
+    public boolean isPlaying() {
+        return mState == MediaManager.STATE_PLAYING;
+    }
+
+    /**
+     * 获取播放状态
+     *
+     * @return MediaManager.STATE_XXX
+     */
+    public int getState() {
+        return mState;
+    }
+
+    @Override
+    public String getPlayingVoicePath() {
+        return mPlayingPath;
+    }
+
+    @Override
+    public void release() {
+        reset();
+        isQuit = true;
+        if (mThread != null) {
+            LockSupport.unpark(mThread);
+            mThread = null;
+        }
+        instance = null;
+    }
+
+    //----------播放线程----------
+
+    private void playbackLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        int handledGeneration = 0;
+        try {
+            while (!isQuit) {
+                int generation;
+                synchronized (mLock) {
+                    generation = mGeneration;
+                    if (generation != handledGeneration) {
+                        mQueue.clear();
+                        mQueue.addAll(mRequestQueue);
+                        mSessionRequestTime = mRequestTime;
+                    }
+                }
+                if (generation == handledGeneration) {
+                    LockSupport.park(this);
+                    continue;
+                }
+                handledGeneration = generation;
+                if (!mQueue.isEmpty()) {
+                    playSession(generation);
+                }
+            }
+        } finally {
+            synchronized (mLock) {
+                if (mTrack != null) {
+                    mTrack.release();
+                    mTrack = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * 按顺序播放队列中的每一条，格式相同时连续写入，格式变化时等前面的播放完再切换
+     */
+    private void playSession(int generation) {
+        mBoundaries.clear();
+        beginSession();
+        String lastPath = null;
+        for (int i = 0; i < mQueue.size() && generation == mGeneration; i++) {
+            String path = mQueue.get(i);
+            long lastModified = new File(path).lastModified();
+            ByteBuffer data = map(path);
+            if (data == null) {
+                postError(generation, path, MediaPlayer.MEDIA_ERROR_IO);
+                continue;
+            }
+            if (!mFormat.parse(data)) {
+                postError(generation, path, MediaPlayer.MEDIA_ERROR_UNSUPPORTED);
+                continue;
+            }
+            //只有IMA ADPCM需要解码，PCM直接从映射的内存写入，不查找缓存（不计入命中率）
+            PcmCache.Entry cached = mFormat.isAdpcm() ? mCache.acquire(path, lastModified) : null;
+            int sampleRate = mFormat.sampleRate;
+            int channelCount = mFormat.channelCount;
+            int encoding = !mFormat.isAdpcm() && mFormat.bitsPerSample == 8
+                    ? AudioFormat.ENCODING_PCM_8BIT : AudioFormat.ENCODING_PCM_16BIT;
+            if (!isTrackMatched(sampleRate, channelCount, encoding)) {
+                //格式变化，先播放完已写入的数据
+                if (lastPath != null && !drain(generation, lastPath, false)) {
+                    releaseCache(cached);
+                    return;
+                }
+                lastPath = null;
+                if (!createTrack(sampleRate, channelCount, encoding)) {
+                    releaseCache(cached);
+                    postError(generation, path, MediaPlayer.MEDIA_ERROR_UNKNOWN);
+                    continue;
+                }
+                beginSession();
+            }
+            setBoundary(lastPath, path, mFramesWritten);
+            boolean finished;
+            if (cached != null) {
+                finished = writePcm(generation, cached.buffer, 0, cached.size, channelCount * 2, sampleRate);
+                releaseCache(cached);
+            } else if (mFormat.isAdpcm()) {
+                finished = writeAdpcm(generation, data, path, lastModified);
+            } else {
+                int frameSize = mFormat.blockAlign;
+                finished = writePcm(generation, data, mFormat.dataOffset,
+                        mFormat.dataSize / frameSize * frameSize, frameSize, sampleRate);
+            }
+            if (!finished) {
+                if (generation == mGeneration) {
+                    //不是被停止，而是写入失败（如音频输出已断开），下次播放时重新创建AudioTrack
+                    abortSession(generation);
+                }
+                return;
+            }
+            lastPath = path;
+        }
+        if (lastPath != null) {
+            drain(generation, lastPath, true);
+        } else if (generation == mGeneration) {
+            //每一条都出错，没有播放
+            postStop(generation, null, true, false);
+        }
+    }
+
+    /**
+     * AudioTrack写入失败，丢弃已写入的数据并停止本次播放
+     */
+    private void abortSession(int generation) {
+        mBoundaries.clear();
+        synchronized (mLock) {
+            if (mTrack != null) {
+                mTrack.release();
+                mTrack = null;
+            }
+        }
+        postStop(generation, null, true, false);
+    }
+
+    private ByteBuffer map(String path) {
+        try (RandomAccessFile file = new RandomAccessFile(path, "r");
+             FileChannel channel = file.getChannel()) {
+            //关闭文件后映射仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    private void releaseCache(PcmCache.Entry entry) {
+        if (entry != null) {
+            mCache.release(entry);
+        }
+    }
+
+    private boolean isTrackMatched(int sampleRate, int channelCount, int encoding) {
+        return mTrack != null && mTrackSampleRate == sampleRate
+                && mTrackChannelCount == channelCount && mTrackEncoding == encoding;
+    }
+
+    private boolean createTrack(int sampleRate, int channelCount, int encoding) {
+        int channelConfig = channelCount == 2
+                ? AudioFormat.CHANNEL_OUT_STEREO : AudioFormat.CHANNEL_OUT_MONO;
+        int minBufferSize = AudioTrack.getMinBufferSize(sampleRate, channelConfig, encoding);
+        if (minBufferSize <= 0) {
+            return false;
+        }
+        synchronized (mLock) {
+            if (mTrack != null) {
+                mTrack.release();
+                mTrack = null;
+            }
+            AudioTrack track = new AudioTrack(AudioManager.STREAM_MUSIC, sampleRate, channelConfig,
+                    encoding, minBufferSize * 2, AudioTrack.MODE_STREAM);
+            if (track.getState() != AudioTrack.STATE_INITIALIZED) {
+                track.release();
+                return false;
+            }
+            mTrack = track;
+        }
+        mTrackSampleRate = sampleRate;
+        mTrackChannelCount = channelCount;
+        mTrackEncoding = encoding;
+        return true;
+    }
+
+    /**
+     * 清空AudioTrack中上一次播放的数据，开始计数
+     */
+    private void beginSession() {
+        synchronized (mLock) {
+            if (mTrack == null) {
+                return;
+            }
+            mTrack.pause();
+            mTrack.flush();
+            mHeadBase = mTrack.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+        }
+        mFramesWritten = 0;
+    }
+
+    /**
+     * 从映射的内存或解码缓存直接写入PCM
+     *
+     * @param offset    数据起始位置
+     * @param size      数据字节数（整帧）
+     * @param frameSize 每帧字节数
+     * @return 是否全部写入（被停止时返回false）
+     */
+    private boolean writePcm(int generation, ByteBuffer data, int offset, int size, int frameSize,
+                             int sampleRate) {
+        int end = offset + size;
+        int chunkSize = sampleRate * CHUNK_DURATION_MS / 1000 * frameSize;
+        int position = offset;
+        while (position < end) {
+            if (generation != mGeneration) {
+                return false;
+            }
+            int length = Math.min(chunkSize, end - position);
+            data.limit(position + length);
+            data.position(position);
+            int written = mTrack.write(data, length, AudioTrack.WRITE_BLOCKING);
+            if (written < 0) {
+                return false;
+            }
+            position += written;
+            mFramesWritten += written / frameSize;
+            onChunkWritten(generation);
+        }
+        return true;
+    }
+
+    /**
+     * 按块解码IMA ADPCM后写入，同时保存到解码缓存
+     *
+     * @return 是否全部写入（被停止时返回false）
+     */
+    private boolean writeAdpcm(int generation, ByteBuffer data, String path, long lastModified) {
+        int channelCount = mFormat.channelCount;
+        int blockAlign = mFormat.blockAlign;
+        if (blockAlign <= ImaAdpcm.BLOCK_HEADER_SIZE * channelCount) {
+            return true;
+        }
+        int samplesPerBlock = ImaAdpcm.samplesPerBlock(blockAlign, channelCount);
+        if (mDecoder == null || mDecoder.getBlockAlign() != blockAlign
+                || mPcm.length != samplesPerBlock * channelCount) {
+            mDecoder = new ImaAdpcmDecoder(channelCount, blockAlign);
+            mPcm = new short[samplesPerBlock * channelCount];
+        }
+        //最后一个块中可能有编码时补齐的采样，以fact块为准
+        long remaining = mFormat.factSamples >= 0 ? mFormat.factSamples : Long.MAX_VALUE;
+        long blocks = (mFormat.dataSize + blockAlign - 1) / blockAlign;
+        long frames = Math.min(remaining, blocks * samplesPerBlock);
+        PcmCache.Entry entry = mCache.create(path, lastModified, mFormat.sampleRate, channelCount,
+                (int) Math.min(Integer.MAX_VALUE, frames * channelCount * 2));
+        boolean finished = false;
+        try {
+            finished = decodeAdpcm(generation, data, remaining, entry);
+            return finished;
+        } finally {
+            if (entry != null) {
+                if (finished) {
+                    mCache.put(entry);
+                }
+                mCache.release(entry);
+            }
+        }
+    }
+
+    private boolean decodeAdpcm(int generation, ByteBuffer data, long remaining, PcmCache.Entry entry) {
+        int channelCount = mFormat.channelCount;
+        int blockAlign = mFormat.blockAlign;
+        int end = mFormat.dataOffset + mFormat.dataSize;
+        int position = mFormat.dataOffset;
+        while (position < end && remaining > 0) {
+            if (generation != mGeneration) {
+                return false;
+            }
+            int length = Math.min(blockAlign, end - position);
+            int samples = (int) Math.min(remaining,
+                    mDecoder.decodeBlock(data, position, length, mPcm, 0));
+            position += length;
+            if (samples <= 0) {
+                break;
+            }
+            remaining -= samples;
+            if (entry != null) {
+                ByteBuffer buffer = entry.buffer;
+                int count = samples * channelCount;
+                for (int j = 0; j < count; j++) {
+                    buffer.putShort(entry.size + j * 2, mPcm[j]);
+                }
+                entry.size += count * 2;
+            }
+            int written = mTrack.write(mPcm, 0, samples * channelCount);
+            if (written < 0) {
+                return false;
+            }
+            mFramesWritten += written / channelCount;
+            onChunkWritten(generation);
+        }
+        return true;
+    }
+
+    private void onChunkWritten(int generation) {
+        synchronized (mLock) {
+            //首次写入后开始播放（缓冲区写满后才真正出声）
+            if (generation == mGeneration && !isPaused
+                    && mTrack.getPlayState() != AudioTrack.PLAYSTATE_PLAYING) {
+                mTrack.play();
+            }
+        }
+        checkBoundary(generation);
+    }
+
+    /**
+     * 记录切换点，播放位置越过时回调上一条结束、下一条开始
+     * （上一个切换点还没到时排在后面，上一条播放完才回调）
+     */
+    private void setBoundary(String stopPath, String startPath, long frame) {
+        mBoundaries.addLast(new Boundary(stopPath, startPath, frame));
+    }
+
+    private void checkBoundary(int generation) {
+        if (mBoundaries.isEmpty()) {
+            return;
+        }
+        long head = getHeadPosition();
+        while (!mBoundaries.isEmpty() && head > mBoundaries.peekFirst().frame) {
+            fireBoundary(generation);
+        }
+    }
+
+    private void fireBoundary(int generation) {
+        Boundary boundary = mBoundaries.pollFirst();
+        long latency = boundary.stopPath == null
+                ? SystemClock.uptimeMillis() - mSessionRequestTime : 0;
+        if (boundary.stopPath != null) {
+            postStop(generation, boundary.stopPath, false, true);
+        }
+        postStart(generation, boundary.startPath, latency);
+    }
+
+    /**
+     * 等待已写入的数据播放完成
+     *
+     * @param last 是否为队列的最后一条
+     * @return 是否播放完成（被停止时返回false）
+     */
+    private boolean drain(int generation, String lastPath, boolean last) {
+        synchronized (mLock) {
+            if (generation != mGeneration) {
+                return false;
+            }
+            //stop后剩余数据会继续播放，缓冲区没有写满的短音频也能出声
+            mTrack.stop();
+        }
+        while (getHeadPosition() < mFramesWritten) {
+            if (generation != mGeneration || isQuit) {
+                return false;
+            }
+            checkBoundary(generation);
+            SystemClock.sleep(DRAIN_POLL_INTERVAL);
+        }
+        //已全部播放完，包括没有写入数据的空文件的切换点
+        while (!mBoundaries.isEmpty()) {
+            fireBoundary(generation);
+        }
+        postStop(generation, lastPath, last, true);
+        return true;
+    }
+
+    private long getHeadPosition() {
+        synchronized (mLock) {
+            if (mTrack == null) {
+                return 0;
+            }
+            return (mTrack.getPlaybackHeadPosition() & 0xFFFFFFFFL) - mHeadBase;
+        }
+    }
+
+    //----------主线程回调----------
+
+    private void postStart(final int generation, final String path, final long latencyMs) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                if (mState != MediaManager.STATE_PAUSED) {
+                    mState = MediaManager.STATE_PLAYING;
+                }
+                mPlayingPath = path;
+                if (mOnPlayListener != null) {
+                    mOnPlayListener.onPlayStart(path, latencyMs);
+                }
+            }
+        });
+    }
+
+    /**
+     * 回调播放结束
+     *
+     * @param path      结束的音频路径，为null时表示当前正在播放的一条
+     * @param last      是否结束本次播放（之后不再有回调）
+     * @param completed true：已播放完成；false：播放失败被中止
+     */
+    private void postStop(final int generation, final String path, final boolean last,
+                          final boolean completed) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                String stopPath = path != null ? path : mPlayingPath;
+                if (last) {
+                    mState = completed ? MediaManager.STATE_COMPLETED : MediaManager.STATE_IDLE;
+                    mPlayingPath = "";
+                }
+                if (mOnPlayListener != null && !stopPath.isEmpty()) {
+                    mOnPlayListener.onPlayStop(stopPath, completed);
+                }
+            }
+        });
+    }
+
+    private void postError(final int generation, final String path, final int extra) {
+        mMainHandler.post(new Runnable() {
+            @Override
+            public void run() {
+                if (generation != mGeneration) {
+                    return;
+                }
+                if (mOnPlayListener != null) {
+                    mOnPlayListener.onPlayError(path, MediaPlayer.MEDIA_ERROR_UNKNOWN, extra);
+                }
+            }
+        });
+    }
+
+    /**
+     * 队列中两条之间的切换点
+     */
+    private static final class Boundary {
+        /**
+         * 结束的一条，队列的第一条为null
+         */
+        final String stopPath;
+        final String startPath;
+        /**
+         * 下一条开始的帧位置
+         */
+        final long frame;
+
+        Boundary(String stopPath, String startPath, long frame) {
+            this.stopPath = stopPath;
+            this.startPath = startPath;
+            this.frame = frame;
+        }
+    }
+}
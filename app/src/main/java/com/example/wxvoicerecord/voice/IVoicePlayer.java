@@ -0,0 +1,88 @@
+package com.example.wxvoicerecord.voice;
+
+import java.util.List;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音播放（主线程调用，回调也在主线程）
+ * <p>
+ * {@link MediaManager}：基于MediaPlayer，支持系统能解码的所有格式；
+ * {@link AudioTrackPlayer}：内存映射直接写入AudioTrack，只支持本地录制的WAV（PCM/IMA ADPCM），启动延迟更低
+ */
+public interface IVoicePlayer {
+    /**
+     * 播放音频（会先停止当前的播放）
+     *
+     * @param voicePath 音频文件路径
+     * @param listener  播放监听
+     */
+    void playVoice(String voicePath, OnPlayListener listener);
+
+    /**
+     * 按顺序连续播放（会先停止当前的播放）
+     *
+     * @param voicePaths 音频文件路径
+     * @param listener   播放监听，每一条开始、结束都会回调
+     */
+    void playQueue(List<String> voicePaths, OnPlayListener listener);
+
+    /**
+     * 暂停播放
+     */
+    void pause();
+
+    /**
+     * 继续播放
+     */
+    void resume();
+
+    /**
+     * 停止播放并清空队列
+     */
+    void reset();
+
+    boolean isPlaying();
+
+    /**
+     * 获取正在播放的音频文件路径
+     *
+     * @return 文件路径，没有播放时返回""
+     */
+    String getPlayingVoicePath();
+
+    /**
+     * 释放播放资源（退出语音界面时调用）
+     */
+    void release();
+
+    /**
+     * 播放监听（主线程回调）
+     */
+    interface OnPlayListener {
+        /**
+         * 开始播放
+         *
+         * @param voicePath 音频文件路径
+         * @param latencyMs 从请求播放到开始播放的延迟（单位：ms），连续播放衔接成功时为0
+         */
+        void onPlayStart(String voicePath, long latencyMs);
+
+        /**
+         * 播放结束
+         *
+         * @param voicePath 音频文件路径
+         * @param completed true：播放完成；false：被停止或播放失败
+         */
+        void onPlayStop(String voicePath, boolean completed);
+
+        /**
+         * 播放出错（文件无法打开或解码失败），连续播放时会跳过这一条
+         *
+         * @param voicePath 音频文件路径
+         * @param what      错误类型
+         * @param extra     错误详情
+         */
+        void onPlayError(String voicePath, int what, int extra);
+    }
+}
@@ -3,23 +3,98 @@ package com.example.wxvoicerecord.voice;
 
 import android.media.AudioManager;
 import android.media.MediaPlayer;
-import android.media.MediaPlayer.OnCompletionListener;
+import android.os.SystemClock;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * 语音播放（主线程调用）
+ * <p>
+ * 整个进程复用两个MediaPlayer，当前播放器按状态机切换：
+ * IDLE -> PREPARING -> PREPARED -> PLAYING <-> PAUSED -> COMPLETED/IDLE
+ * <p>
+ * 文件在 {@link VoiceIoExecutor} 中打开，MediaPlayer通过prepareAsync准备，点击播放不会阻塞主线程
+ * <p>
+ * 连续播放（{@link #playQueue(List, OnPlayListener)}）时，当前消息开始播放后就用另一个播放器准备下一条，
+ * 准备完成后通过setNextMediaPlayer衔接，当前消息播放完成时由系统直接切换，中间没有准备的间隔
+ */
+public class MediaManager implements IVoicePlayer {
+    /**
+     * 空闲（没有播放）
+     */
+    public static final int STATE_IDLE = 0;
+    /**
+     * 正在打开文件或准备播放
+     */
+    public static final int STATE_PREPARING = 1;
+    /**
+     * 准备完成
+     */
+    public static final int STATE_PREPARED = 2;
+    /**
+     * 正在播放
+     */
+    public static final int STATE_PLAYING = 3;
+    /**
+     * 暂停
+     */
+    public static final int STATE_PAUSED = 4;
+    /**
+     * 播放完成
+     */
+    public static final int STATE_COMPLETED = 5;
+
+    /**
+     * 下一条：没有准备
+     */
+    private static final int NEXT_NONE = 0;
+    /**
+     * 下一条：正在准备
+     */
+    private static final int NEXT_PREPARING = 1;
+    /**
+     * 下一条：已准备并衔接到当前播放器
+     */
+    private static final int NEXT_PREPARED = 2;
 
-public class MediaManager {
     public volatile static MediaManager instance;
+    /**
+     * 当前播放器
+     */
     private MediaPlayer mPlayer;
-    private static boolean isVoicePause;
     /**
-     * 当前播放录音文件path
+     * 预先准备下一条的播放器
+     */
+    private MediaPlayer mNextPlayer;
+    private int mState = STATE_IDLE;
+    private int mNextState = NEXT_NONE;
+    /**
+     * 播放队列
      */
-    private String mPlayingVoicePath;
+    private final ArrayList<String> mQueue = new ArrayList<>();
     /**
-     * 播放完成监听
+     * 当前播放的位置
      */
-    private OnCompletionListener mOnCompletionListener;
+    private int mQueueIndex;
+    /**
+     * 当前队列的监听
+     */
+    private OnPlayListener mOnPlayListener;
+    /**
+     * 播放请求序号，停止或开始新的播放时递增，过期的文件打开和准备结果直接丢弃
+     */
+    private int mGeneration;
+    /**
+     * 请求播放的时间（SystemClock.uptimeMillis()），用于计算播放延迟
+     */
+    private long mRequestTime;
 
     private MediaManager() {
-        mPlayer = new MediaPlayer();
     }
 
     public static MediaManager getInstance() {
@@ -34,70 +109,334 @@ public class MediaManager {
     }
 
     /**
-     * 播放音频
+     * 播放音频（会先停止当前的播放）
+     *
+     * @param voicePath 音频文件路径
+     * @param listener  播放监听
      */
-    public void playVoice(String voicePath, OnCompletionListener onCompletionListener) {
-        if (mPlayer == null) {
+    @Override
+    public void playVoice(String voicePath, OnPlayListener listener) {
+        playQueue(Collections.singletonList(voicePath), listener);
+    }
+
+    /**
+     * 按顺序连续播放（会先停止当前的播放）
+     *
+     * @param voicePaths 音频文件路径
+     * @param listener   播放监听，每一条开始、结束都会回调
+     */
+    @Override
+    public void playQueue(List<String> voicePaths, OnPlayListener listener) {
+        reset();
+        if (voicePaths.isEmpty()) {
+            return;
+        }
+        mQueue.addAll(voicePaths);
+        mQueueIndex = 0;
+        mOnPlayListener = listener;
+        prepareCurrent();
+    }
+
+    /**
+     * 用当前播放器准备当前位置的音频，准备完成后开始播放
+     */
+    private void prepareCurrent() {
+        mState = STATE_PREPARING;
+        mRequestTime = SystemClock.uptimeMillis();
+        openAndPrepare(obtainPlayer(), mQueue.get(mQueueIndex));
+    }
+
+    /**
+     * 用另一个播放器准备下一条
+     */
+    private void prepareNext() {
+        if (mQueueIndex + 1 >= mQueue.size()) {
             return;
         }
+        if (mNextPlayer == null) {
+            mNextPlayer = createPlayer();
+        }
+        mNextState = NEXT_PREPARING;
+        openAndPrepare(mNextPlayer, mQueue.get(mQueueIndex + 1));
+    }
+
+    /**
+     * 在文件读写线程中打开文件，回到主线程后设置数据源并异步准备
+     */
+    private void openAndPrepare(final MediaPlayer player, final String voicePath) {
+        final int generation = mGeneration;
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_PLAYBACK,
+                new Callable<FileInputStream>() {
+                    @Override
+                    public FileInputStream call() throws IOException {
+                        return new FileInputStream(voicePath);
+                    }
+                }, new VoiceIoExecutor.Callback<FileInputStream>() {
+                    @Override
+                    public void onResult(FileInputStream stream) {
+                        onFileOpened(generation, player, stream);
+                    }
+                });
+    }
 
-        mPlayer.reset();
-        mOnCompletionListener = onCompletionListener;
+    private void onFileOpened(int generation, MediaPlayer player, FileInputStream stream) {
+        //已经停止，或者播放器已经用于其他消息
+        if (generation != mGeneration || !isPreparing(player)) {
+            closeQuietly(stream);
+            return;
+        }
+        if (stream == null) {
+            onPlayerError(player, MediaPlayer.MEDIA_ERROR_UNKNOWN, MediaPlayer.MEDIA_ERROR_IO);
+            return;
+        }
         try {
-            mPlayingVoicePath = voicePath;
-            mPlayer.setAudioStreamType(AudioManager.STREAM_MUSIC);
-            mPlayer.setOnCompletionListener(onCompletionListener);
-            mPlayer.setDataSource(voicePath);
-            mPlayer.setVolume(90, 90);
-            mPlayer.setLooping(false);
-            mPlayer.prepare();
-            mPlayer.start();
+            player.reset();
+            player.setAudioStreamType(AudioManager.STREAM_MUSIC);
+            player.setDataSource(stream.getFD());
+            player.setVolume(90, 90);
+            player.setLooping(false);
+            player.prepareAsync();
         } catch (Exception e) {
             e.printStackTrace();
+            onPlayerError(player, MediaPlayer.MEDIA_ERROR_UNKNOWN, MediaPlayer.MEDIA_ERROR_IO);
+        } finally {
+            //setDataSource返回后就可以关闭文件
+            closeQuietly(stream);
         }
     }
 
+    private boolean isPreparing(MediaPlayer player) {
+        return player == mPlayer ? mState == STATE_PREPARING : mNextState == NEXT_PREPARING;
+    }
+
+    private MediaPlayer obtainPlayer() {
+        if (mPlayer == null) {
+            mPlayer = createPlayer();
+        }
+        return mPlayer;
+    }
+
+    private MediaPlayer createPlayer() {
+        MediaPlayer player = new MediaPlayer();
+        player.setOnPreparedListener(mOnPreparedListener);
+        player.setOnCompletionListener(mOnCompletionListener);
+        player.setOnErrorListener(mOnErrorListener);
+        return player;
+    }
+
+    private final MediaPlayer.OnPreparedListener mOnPreparedListener =
+            new MediaPlayer.OnPreparedListener() {
+                @Override
+                public void onPrepared(MediaPlayer mp) {
+                    if (mp == mPlayer && mState == STATE_PREPARING) {
+                        mState = STATE_PREPARED;
+                        mp.start();
+                        mState = STATE_PLAYING;
+                        dispatchStart(SystemClock.uptimeMillis() - mRequestTime);
+                        prepareNext();
+                    } else if (mp == mNextPlayer && mNextState == NEXT_PREPARING) {
+                        //衔接到当前播放器，播放完成时由系统直接开始下一条
+                        mNextState = NEXT_PREPARED;
+                        mPlayer.setNextMediaPlayer(mp);
+                    }
+                }
+            };
+
+    private final MediaPlayer.OnCompletionListener mOnCompletionListener =
+            new MediaPlayer.OnCompletionListener() {
+                @Override
+                public void onCompletion(MediaPlayer mp) {
+                    if (mp != mPlayer || mState != STATE_PLAYING) {
+                        return;
+                    }
+                    dispatchStop(true);
+                    advance();
+                }
+            };
+
+    private final MediaPlayer.OnErrorListener mOnErrorListener =
+            new MediaPlayer.OnErrorListener() {
+                @Override
+                public boolean onError(MediaPlayer mp, int what, int extra) {
+                    onPlayerError(mp, what, extra);
+                    //已处理，不再回调onCompletion
+                    return true;
+                }
+            };
+
+    /**
+     * 当前消息结束，切换到下一条
+     */
+    private void advance() {
+        if (mQueueIndex + 1 >= mQueue.size()) {
+            mState = STATE_COMPLETED;
+            return;
+        }
+        mQueueIndex++;
+        int nextState = mNextState;
+        mNextState = NEXT_NONE;
+        if (nextState == NEXT_NONE) {
+            //下一条没有提前准备（准备失败后跳过了）
+            prepareCurrent();
+            return;
+        }
+        //交换两个播放器，播放完的播放器留给再下一条使用
+        MediaPlayer finished = mPlayer;
+        mPlayer = mNextPlayer;
+        mNextPlayer = finished;
+        finished.setNextMediaPlayer(null);
+        if (nextState == NEXT_PREPARED) {
+            //系统已经开始播放下一条
+            mState = STATE_PLAYING;
+            dispatchStart(0);
+            prepareNext();
+        } else {
+            //下一条还在准备，准备完成后开始播放
+            mState = STATE_PREPARING;
+            mRequestTime = SystemClock.uptimeMillis();
+        }
+    }
+
+    /**
+     * 播放出错，跳过出错的消息继续播放
+     */
+    private void onPlayerError(MediaPlayer player, int what, int extra) {
+        if (player == mNextPlayer && mNextState == NEXT_PREPARED) {
+            //先解除衔接，否则当前播放完成时会切换到已重置的播放器
+            mPlayer.setNextMediaPlayer(null);
+        }
+        player.reset();
+        if (player == mPlayer) {
+            boolean started = mState == STATE_PLAYING || mState == STATE_PAUSED;
+            dispatchError(mQueue.get(mQueueIndex), what, extra);
+            if (started && mNextState == NEXT_PREPARED) {
+                //已经衔接的下一条不会被系统自动开始
+                mNextPlayer.reset();
+                mNextState = NEXT_NONE;
+            }
+            if (started) {
+                //已经回调了开始播放，回调结束（未完成）
+                dispatchStop(false);
+            }
+            advance();
+        } else if (player == mNextPlayer) {
+            dispatchError(mQueue.remove(mQueueIndex + 1), what, extra);
+            mNextState = NEXT_NONE;
+            if (mState == STATE_PLAYING || mState == STATE_PAUSED) {
+                prepareNext();
+            }
+        }
+    }
+
+    /**
+     * 暂停播放
+     */
+    @Override
     public void pause() {
-        if (isPlaying()) {
+        if (mState == STATE_PLAYING) {
             mPlayer.pause();
-            isVoicePause = true;
+            mState = STATE_PAUSED;
+        }
+    }
+
+    /**
+     * 继续播放
+     */
+    @Override
+    public void resume() {
+        if (mState == STATE_PAUSED) {
+            mPlayer.start();
+            mState = STATE_PLAYING;
         }
     }
 
+    /**
+     * 停止播放并清空队列（保留播放器，下次播放直接复用）
+     */
+    @Override
     public void reset() {
-        if (isPlaying()) {
-            mPlayer.reset();
-            if (mOnCompletionListener != null) {
-                mOnCompletionListener.onCompletion(null);
+        mGeneration++;
+        int state = mState;
+        if (mNextState != NEXT_NONE) {
+            mNextPlayer.reset();
+            mNextState = NEXT_NONE;
+        }
+        if (state != STATE_IDLE) {
+            if (state != STATE_COMPLETED) {
+                mPlayer.reset();
+            }
+            mState = STATE_IDLE;
+            if (state != STATE_COMPLETED) {
+                dispatchStop(false);
             }
         }
-        mPlayingVoicePath = "";
+        mQueue.clear();
+        mQueueIndex = 0;
+        mOnPlayListener = null;
     }
 
+    @Override
     public boolean isPlaying() {
-        return mPlayer != null && mPlayer.isPlaying();
+        return mState == STATE_PLAYING;
     }
 
-    public String getPlayingVoicePath() {
-        if (!isPlaying()) {
-            mPlayingVoicePath = "";
-        }
-        return mPlayingVoicePath;
+    /**
+     * 获取播放状态
+     *
+     * @return STATE_XXX
+     */
+    public int getState() {
+        return mState;
     }
 
-    public void resume() {
-        if (mPlayer != null && isVoicePause) {
-            mPlayer.start();
-            isVoicePause = false;
-        }
+    @Override
+    public String getPlayingVoicePath() {
+        return mState == STATE_IDLE || mState == STATE_COMPLETED ? "" : mQueue.get(mQueueIndex);
     }
 
+    /**
+     * 释放播放器（退出语音界面时调用）
+     */
+    @Override
     public void release() {
+        reset();
         if (mPlayer != null) {
             mPlayer.release();
             mPlayer = null;
         }
-        mPlayingVoicePath = "";
+        if (mNextPlayer != null) {
+            mNextPlayer.release();
+            mNextPlayer = null;
+        }
         instance = null;
     }
+
+    private void dispatchStart(long latencyMs) {
+        if (mOnPlayListener != null) {
+            mOnPlayListener.onPlayStart(mQueue.get(mQueueIndex), latencyMs);
+        }
+    }
+
+    private void dispatchStop(boolean completed) {
+        if (mOnPlayListener != null) {
+            mOnPlayListener.onPlayStop(mQueue.get(mQueueIndex), completed);
+        }
+    }
+
+    private void dispatchError(String voicePath, int what, int extra) {
+        if (mOnPlayListener != null) {
+            mOnPlayListener.onPlayError(voicePath, what, extra);
+        }
+    }
+
+    private static void closeQuietly(FileInputStream stream) {
+        if (stream == null) {
+            return;
+        }
+        try {
+            stream.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
 }
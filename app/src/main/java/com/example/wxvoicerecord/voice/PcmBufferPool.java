@@ -0,0 +1,92 @@
+package com.example.wxvoicerecord.voice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayDeque;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 直接内存缓冲区池（进程内共享），解码缓存使用
+ * <p>
+ * 容量按2的幂向上取整分组，归还后给下一次相近长度的解码复用，避免反复分配直接内存
+ */
+final class PcmBufferPool {
+    /**
+     * 最小容量（16k单声道16bit约0.5s）
+     */
+    private static final int MIN_CAPACITY_SHIFT = 14;
+    private static final int MAX_CAPACITY_SHIFT = 30;
+    /**
+     * 池中最多保留的总字节数
+     */
+    private static final int MAX_POOLED_BYTES = 1024 * 1024;
+
+    @SuppressWarnings("unchecked")
+    private static final ArrayDeque<ByteBuffer>[] sBuffers =
+            new ArrayDeque[MAX_CAPACITY_SHIFT - MIN_CAPACITY_SHIFT + 1];
+    private static int sPooledBytes;
+
+    private PcmBufferPool() {
+    }
+
+    /**
+     * 取出一个缓冲区（池中没有合适的时新建）
+     *
+     * @param size 需要的字节数
+     * @return 容量不小于size的小端缓冲区，position为0，limit为容量
+     */
+    static ByteBuffer obtain(int size) {
+        int index = indexOf(size);
+        synchronized (sBuffers) {
+            ArrayDeque<ByteBuffer> buffers = sBuffers[index];
+            ByteBuffer buffer = buffers == null ? null : buffers.pollFirst();
+            if (buffer != null) {
+                sPooledBytes -= buffer.capacity();
+                buffer.clear();
+                return buffer;
+            }
+        }
+        return ByteBuffer.allocateDirect(1 << (index + MIN_CAPACITY_SHIFT))
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * 归还缓冲区（超出池容量时丢弃）
+     *
+     * @param buffer 由 {@link #obtain(int)} 取出的缓冲区
+     */
+    static void recycle(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        int index = indexOf(capacity);
+        synchronized (sBuffers) {
+            if (sPooledBytes + capacity > MAX_POOLED_BYTES) {
+                return;
+            }
+            if (sBuffers[index] == null) {
+                sBuffers[index] = new ArrayDeque<>();
+            }
+            sBuffers[index].addFirst(buffer);
+            sPooledBytes += capacity;
+        }
+    }
+
+    /**
+     * 清空池（内存紧张时调用）
+     */
+    static void clear() {
+        synchronized (sBuffers) {
+            for (ArrayDeque<ByteBuffer> buffers : sBuffers) {
+                if (buffers != null) {
+                    buffers.clear();
+                }
+            }
+            sPooledBytes = 0;
+        }
+    }
+
+    private static int indexOf(int size) {
+        int shift = 32 - Integer.numberOfLeadingZeros(Math.max(size, 1) - 1);
+        return Math.max(shift, MIN_CAPACITY_SHIFT) - MIN_CAPACITY_SHIFT;
+    }
+}
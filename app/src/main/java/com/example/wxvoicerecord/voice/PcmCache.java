@@ -0,0 +1,209 @@
+package com.example.wxvoicerecord.voice;
+
+import android.content.ComponentCallbacks2;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 最近播放语音的解码缓存（16bit PCM，按字节数限制大小的LRU）
+ * <p>
+ * 以文件路径+修改时间作为缓存依据，文件被改写后缓存自动失效。
+ * 数据保存在 {@link PcmBufferPool} 的直接内存中，可以直接写入AudioTrack；
+ * 播放中的缓存被淘汰时，等播放结束再归还缓冲区
+ */
+public final class PcmCache {
+    /**
+     * 默认缓存大小（16k单声道16bit约2分钟）
+     */
+    private static final int DEFAULT_MAX_SIZE = 4 * 1024 * 1024;
+
+    public volatile static PcmCache instance;
+
+    private final LinkedHashMap<String, Entry> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private final int mMaxSize;
+    /**
+     * 缓存占用的字节数（按缓冲区容量计算，缓冲池会向上取整）
+     */
+    private int mSize;
+    private long mHitCount;
+    private long mMissCount;
+    private long mEvictionCount;
+
+    private PcmCache(int maxSize) {
+        mMaxSize = maxSize;
+    }
+
+    public static PcmCache getInstance() {
+        if (instance == null) {
+            synchronized (PcmCache.class) {
+                if (instance == null) {
+                    instance = new PcmCache(DEFAULT_MAX_SIZE);
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * 获取缓存，使用完需要调用 {@link #release(Entry)}
+     *
+     * @param path         音频文件路径
+     * @param lastModified 文件修改时间
+     * @return 缓存，没有缓存或文件已改写时返回null
+     */
+    synchronized Entry acquire(String path, long lastModified) {
+        Entry entry = mEntries.get(path);
+        if (entry != null && entry.lastModified != lastModified) {
+            remove(entry);
+            entry = null;
+        }
+        if (entry == null) {
+            mMissCount++;
+            return null;
+        }
+        mHitCount++;
+        entry.refCount++;
+        return entry;
+    }
+
+    /**
+     * 创建缓存（解码完成后调用 {@link #put(Entry)} 加入缓存），使用完需要调用 {@link #release(Entry)}
+     *
+     * @param size 解码后的字节数
+     * @return 缓存，缓冲区超过缓存大小时返回null
+     */
+    Entry create(String path, long lastModified, int sampleRate, int channelCount, int size) {
+        if (size <= 0 || size > mMaxSize) {
+            return null;
+        }
+        ByteBuffer buffer = PcmBufferPool.obtain(size);
+        if (buffer.capacity() > mMaxSize) {
+            PcmBufferPool.recycle(buffer);
+            return null;
+        }
+        Entry entry = new Entry(path, lastModified, sampleRate, channelCount, buffer);
+        entry.refCount = 1;
+        return entry;
+    }
+
+    /**
+     * 加入缓存，超出大小时淘汰最久没有播放的
+     *
+     * @param entry {@link #create} 创建并已写入数据的缓存
+     */
+    synchronized void put(Entry entry) {
+        Entry old = mEntries.get(entry.path);
+        if (old != null) {
+            remove(old);
+        }
+        entry.isCached = true;
+        mEntries.put(entry.path, entry);
+        mSize += entry.buffer.capacity();
+        trimToSize(mMaxSize);
+    }
+
+    /**
+     * 使用结束
+     */
+    synchronized void release(Entry entry) {
+        entry.refCount--;
+        recycleIfUnused(entry);
+    }
+
+    /**
+     * 内存紧张时释放缓存（Application.onTrimMemory中调用）
+     *
+     * @param level ComponentCallbacks2.TRIM_MEMORY_XXX
+     */
+    public synchronized void trimMemory(int level) {
+        if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND
+                || level == ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+            trimToSize(0);
+            PcmBufferPool.clear();
+        } else if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_LOW) {
+            trimToSize(mMaxSize / 2);
+        }
+    }
+
+    public synchronized long getHitCount() {
+        return mHitCount;
+    }
+
+    public synchronized long getMissCount() {
+        return mMissCount;
+    }
+
+    public synchronized long getEvictionCount() {
+        return mEvictionCount;
+    }
+
+    public synchronized int getSize() {
+        return mSize;
+    }
+
+    private void trimToSize(int maxSize) {
+        Iterator<Map.Entry<String, Entry>> iterator = mEntries.entrySet().iterator();
+        while (mSize > maxSize && iterator.hasNext()) {
+            Entry entry = iterator.next().getValue();
+            iterator.remove();
+            onRemoved(entry);
+            mEvictionCount++;
+        }
+    }
+
+    private void remove(Entry entry) {
+        mEntries.remove(entry.path);
+        onRemoved(entry);
+    }
+
+    private void onRemoved(Entry entry) {
+        entry.isCached = false;
+        mSize -= entry.buffer.capacity();
+        recycleIfUnused(entry);
+    }
+
+    private void recycleIfUnused(Entry entry) {
+        if (!entry.isCached && entry.refCount == 0) {
+            PcmBufferPool.recycle(entry.buffer);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        long accesses = mHitCount + mMissCount;
+        return String.format(Locale.US, "PcmCache[size=%d/%d,hits=%d,misses=%d,evictions=%d,hitRate=%d%%]",
+                mSize, mMaxSize, mHitCount, mMissCount, mEvictionCount,
+                accesses == 0 ? 0 : (int) (100 * mHitCount / accesses));
+    }
+
+    /**
+     * 一条语音的解码数据
+     */
+    static final class Entry {
+        final String path;
+        final long lastModified;
+        final int sampleRate;
+        final int channelCount;
+        final ByteBuffer buffer;
+        /**
+         * 数据的字节数（加入缓存前写入）
+         */
+        int size;
+        private int refCount;
+        private boolean isCached;
+
+        private Entry(String path, long lastModified, int sampleRate, int channelCount, ByteBuffer buffer) {
+            this.path = path;
+            this.lastModified = lastModified;
+            this.sampleRate = sampleRate;
+            this.channelCount = channelCount;
+            this.buffer = buffer;
+        }
+    }
+}
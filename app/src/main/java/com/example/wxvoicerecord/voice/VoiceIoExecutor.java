@@ -0,0 +1,167 @@
+package com.example.wxvoicerecord.voice;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import java.io.File;
+import java.util.concurrent.Callable;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音文件读写线程（录音、播放流程中的文件操作都在这里执行，不在主线程读写文件）
+ * <p>
+ * 单线程按优先级执行：录音 > 播放 > 消息列表 > 编码 > 保存 > 清理，同一优先级按提交顺序执行
+ */
+public final class VoiceIoExecutor {
+    /**
+     * 优先级：录音准备（创建目录等，会影响录音开始）
+     */
+    public static final int PRIORITY_CAPTURE = 0;
+    /**
+     * 优先级：播放准备（会影响播放开始的延迟）
+     */
+    public static final int PRIORITY_PLAYBACK = 1;
+    /**
+     * 优先级：消息列表（加载、保存消息记录，会影响列表显示）
+     */
+    public static final int PRIORITY_LIST = 2;
+    /**
+     * 优先级：编码、转码
+     */
+    public static final int PRIORITY_ENCODE = 3;
+    /**
+     * 优先级：保存录音（解析文件头、确认文件存在）
+     */
+    public static final int PRIORITY_COMMIT = 4;
+    /**
+     * 优先级：清理（删除取消的录音、修复残留文件）
+     */
+    public static final int PRIORITY_CLEANUP = 5;
+
+    private static volatile VoiceIoExecutor sInstance;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    /**
+     * 提交序号，同一优先级按提交顺序执行
+     */
+    private final AtomicLong mSequence = new AtomicLong();
+
+    private VoiceIoExecutor() {
+        mExecutor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "VoiceIo");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    public static VoiceIoExecutor getInstance() {
+        if (sInstance == null) {
+            synchronized (VoiceIoExecutor.class) {
+                if (sInstance == null) {
+                    sInstance = new VoiceIoExecutor();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 执行任务
+     *
+     * @param priority 优先级（PRIORITY_XXX）
+     * @param task     任务
+     */
+    public void execute(int priority, Runnable task) {
+        mExecutor.execute(new PriorityTask(priority, mSequence.getAndIncrement(), task));
+    }
+
+    /**
+     * 执行任务，在主线程中回调结果
+     *
+     * @param priority 优先级（PRIORITY_XXX）
+     * @param task     任务（异常时结果为null）
+     * @param callback 主线程回调
+     */
+    public <T> void submit(int priority, final Callable<T> task, final Callback<T> callback) {
+        execute(priority, new Runnable() {
+            @Override
+            public void run() {
+                T result = null;
+                try {
+                    result = task.call();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+                final T value = result;
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        callback.onResult(value);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 删除文件
+     *
+     * @param path 文件路径
+     */
+    public void delete(final String path) {
+        execute(PRIORITY_CLEANUP, new Runnable() {
+            @Override
+            public void run() {
+                new File(path).delete();
+            }
+        });
+    }
+
+    /**
+     * 任务结果回调
+     */
+    public interface Callback<T> {
+        /**
+         * 任务完成（主线程回调）
+         *
+         * @param result 任务结果
+         */
+        void onResult(T result);
+    }
+
+    private static final class PriorityTask implements Runnable, Comparable<PriorityTask> {
+        private final int mPriority;
+        private final long mSequence;
+        private final Runnable mTask;
+
+        PriorityTask(int priority, long sequence, Runnable task) {
+            mPriority = priority;
+            mSequence = sequence;
+            mTask = task;
+        }
+
+        @Override
+        public void run() {
+            mTask.run();
+        }
+
+        @Override
+        public int compareTo(PriorityTask other) {
+            if (mPriority != other.mPriority) {
+                return mPriority < other.mPriority ? -1 : 1;
+            }
+            return mSequence < other.mSequence ? -1 : (mSequence == other.mSequence ? 0 : 1);
+        }
+    }
+}
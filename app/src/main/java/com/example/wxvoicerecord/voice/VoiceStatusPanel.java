@@ -16,6 +16,8 @@ import android.view.View;
 import android.view.animation.BounceInterpolator;
 import android.view.animation.Interpolator;
 
+import com.example.wxvoicerecord.voice.record.LevelMailbox;
+
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Random;
@@ -29,6 +31,9 @@ import androidx.annotation.Nullable;
  * <p>
  * 在录音的时候可以通过 {@link #updateVoiceDb(int)} 来设置声音波纹的显示，根据传入的db值动态显示
  * <p>
+ * 也可以通过 {@link #setLevelMailbox(LevelMailbox)} 绑定电平信箱，面板按显示帧率读取最新的电平值，
+ * 声音波纹实时跟随说话的音量
+ * <p>
  * 录音快结束时，更新面板内容，提示剩余时长
  * <p>
  * 根据RecordButton的选中状态，动态的更新背景
@@ -60,6 +65,18 @@ public class VoiceStatusPanel extends View {
      * 驱动进入巡检模式的事件
      */
     private static final int WHAT_CHECK_VOICE = 4;
+    /**
+     * 按显示帧率读取电平信箱的事件
+     */
+    private static final int WHAT_POLL_LEVEL = 5;
+    /**
+     * 显示刷新间隔（单位：ms）
+     */
+    private static final int FRAME_INTERVAL = 16;
+    /**
+     * 一般正常说话分贝值在40-60，这里以30为没有声音的判断依据
+     */
+    private static final int SILENCE_DB = 30;
     /**
      * 监听模式下的声音线条高度
      */
@@ -95,7 +112,11 @@ public class VoiceStatusPanel extends View {
     /**
      * handler，处理界面更新
      */
-    private LineHandler mLineHandler;
+    private volatile LineHandler mLineHandler;
+    /**
+     * 电平信箱（录音线程投递，面板按显示帧率读取）
+     */
+    private volatile LevelMailbox mLevelMailbox;
     /**
      * 回弹插值器
      */
@@ -170,6 +191,9 @@ public class VoiceStatusPanel extends View {
         new Thread(() -> {
             Looper.prepare();
             mLineHandler = new LineHandler(Looper.myLooper());
+            if (mLevelMailbox != null) {
+                mLineHandler.sendEmptyMessage(WHAT_POLL_LEVEL);
+            }
             Looper.loop();
         }).start();
     }
@@ -288,6 +312,19 @@ public class VoiceStatusPanel extends View {
         }
     }
 
+    /**
+     * 绑定电平信箱，面板每个显示帧从信箱中读取最新的电平值驱动音量条
+     *
+     * @param mailbox 电平信箱
+     */
+    public void setLevelMailbox(LevelMailbox mailbox) {
+        mLevelMailbox = mailbox;
+        if (mLineHandler != null) {
+            mLineHandler.removeMessages(WHAT_POLL_LEVEL);
+            mLineHandler.sendEmptyMessage(WHAT_POLL_LEVEL);
+        }
+    }
+
     /**
      * 设置插值器
      *
@@ -369,28 +406,35 @@ public class VoiceStatusPanel extends View {
                     break;
                 case WHAT_CHANGE_VOICE_DB:
                     int voiceDecibel = (int) msg.obj;
-                    //一般正常说话分贝值在40-60，这里以30为没有声音的判断依据
-                    if (voiceDecibel < 30) {
-                        if (!isCheckMode) {
-                            //声音太小进入监听模式
-                            isCheckMode = true;
-                            checkModeIndex = mVoiceLines.size() - 1;
-                            sendEmptyMessage(WHAT_CHECK_VOICE);
-                        }
+                    if (!applyVoiceDb(voiceDecibel)) {
                         return;
-                    } else {
-                        //退出监听模式
-                        isCheckMode = false;
-                        removeMessages(WHAT_CHECK_VOICE);
                     }
-
                     for (VoiceLine drawLine : mVoiceLines) {
                         drawLine.timeCompletion = 0;
                         drawLine.small = false;
-                        drawLine.maxLineHeight = (int) (drawLine.rotas * voiceDecibel);
                     }
                     sendEmptyMessage(WHAT_ANIMATION);
                     break;
+                case WHAT_POLL_LEVEL:
+                    LevelMailbox mailbox = mLevelMailbox;
+                    if (mailbox == null) {
+                        return;
+                    }
+                    long level = mailbox.poll();
+                    if (level != LevelMailbox.EMPTY) {
+                        if (firstShow) {
+                            firstShow = false;
+                            removeMessages(WHAT_CHANGE_PANEL_WIDTH);
+                            sendEmptyMessage(WHAT_CHANGE_PANEL_WIDTH);
+                        }
+                        boolean wasCheckMode = isCheckMode;
+                        //只更新音量条的目标高度，不打断正在进行的动画，音量条连续跟随音量变化
+                        if (applyVoiceDb((int) LevelMailbox.rmsDb(level)) && wasCheckMode) {
+                            sendEmptyMessage(WHAT_ANIMATION);
+                        }
+                    }
+                    sendEmptyMessageDelayed(WHAT_POLL_LEVEL, FRAME_INTERVAL);
+                    break;
                 case WHAT_CHECK_VOICE:
                     //判断是否是监听模式
                     if (!isCheckMode) {
@@ -424,6 +468,31 @@ public class VoiceStatusPanel extends View {
         }
     }
 
+    /**
+     * 根据分贝值更新音量条最大高度（只能在LineHandler线程调用）
+     *
+     * @param voiceDecibel 分贝值
+     * @return 是否识别到人声（声音太小时进入监听模式，返回false）
+     */
+    private boolean applyVoiceDb(int voiceDecibel) {
+        if (voiceDecibel < SILENCE_DB) {
+            if (!isCheckMode) {
+                //声音太小进入监听模式
+                isCheckMode = true;
+                checkModeIndex = mVoiceLines.size() - 1;
+                mLineHandler.sendEmptyMessage(WHAT_CHECK_VOICE);
+            }
+            return false;
+        }
+        //退出监听模式
+        isCheckMode = false;
+        mLineHandler.removeMessages(WHAT_CHECK_VOICE);
+        for (VoiceLine drawLine : mVoiceLines) {
+            drawLine.maxLineHeight = (int) (drawLine.rotas * voiceDecibel);
+        }
+        return true;
+    }
+
     /**
      * 销毁
      */
@@ -0,0 +1,87 @@
+package com.example.wxvoicerecord.voice;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 从内存映射的WAV文件中解析格式和data块位置（对象可以复用，解析过程不分配内存）
+ */
+final class WavFormat {
+    int format;
+    int channelCount;
+    int sampleRate;
+    int blockAlign;
+    int bitsPerSample;
+    /**
+     * 每声道的总采样数（fact块，没有时为-1）
+     */
+    long factSamples;
+    /**
+     * data块数据的起始位置
+     */
+    int dataOffset;
+    /**
+     * data块数据的长度（已按文件实际长度修正）
+     */
+    int dataSize;
+
+    /**
+     * 解析文件头
+     *
+     * @param buffer 整个文件的数据（不改变position）
+     * @return 是否为支持的格式（PCM 8/16bit 或 IMA ADPCM）
+     */
+    boolean parse(ByteBuffer buffer) {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        format = 0;
+        channelCount = 0;
+        factSamples = -1;
+        int length = buffer.limit();
+        if (length < 12 || buffer.getInt(0) != 0x46464952 || buffer.getInt(8) != 0x45564157) {
+            //"RIFF" "WAVE"
+            return false;
+        }
+        int position = 12;
+        while (position + 8 <= length) {
+            int id = buffer.getInt(position);
+            long chunkSize = buffer.getInt(position + 4) & 0xFFFFFFFFL;
+            int bodyStart = position + 8;
+            if (id == 0x20746D66 && bodyStart + 16 <= length) {
+                //"fmt "
+                format = buffer.getShort(bodyStart) & 0xFFFF;
+                channelCount = buffer.getShort(bodyStart + 2) & 0xFFFF;
+                sampleRate = buffer.getInt(bodyStart + 4);
+                blockAlign = buffer.getShort(bodyStart + 12) & 0xFFFF;
+                bitsPerSample = buffer.getShort(bodyStart + 14) & 0xFFFF;
+            } else if (id == 0x74636166 && bodyStart + 4 <= length) {
+                //"fact"
+                factSamples = buffer.getInt(bodyStart) & 0xFFFFFFFFL;
+            } else if (id == 0x61746164) {
+                //"data"，长度为0或超出文件大小时（录音中途进程被杀）以文件实际长度为准
+                int available = length - bodyStart;
+                dataOffset = bodyStart;
+                dataSize = chunkSize == 0 || chunkSize > available ? available : (int) chunkSize;
+                return isSupported();
+            }
+            //块长度为奇数时有一个填充字节
+            position = (int) Math.min(Integer.MAX_VALUE, bodyStart + chunkSize + (chunkSize & 1));
+        }
+        return false;
+    }
+
+    boolean isAdpcm() {
+        return format == AudioDurationProbe.WAVE_FORMAT_IMA_ADPCM;
+    }
+
+    private boolean isSupported() {
+        if (channelCount < 1 || channelCount > 2 || sampleRate <= 0 || blockAlign <= 0) {
+            return false;
+        }
+        if (format == AudioDurationProbe.WAVE_FORMAT_PCM) {
+            return bitsPerSample == 8 || bitsPerSample == 16;
+        }
+        return format == AudioDurationProbe.WAVE_FORMAT_IMA_ADPCM;
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.wxvoicerecord.voice;
+
+import com.example.wxvoicerecord.voice.record.AdpcmWavFileSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 将PCM录音文件转码为IMA ADPCM（16bit约压缩为1/4，8bit约为1/2），采样率和声道数不变
+ * <p>
+ * 源文件只读映射，按帧送入 {@link AdpcmWavFileSink} 写入目标文件，结束后同步到磁盘，
+ * 调用方再用重命名替换源文件，播放时不会读到写了一半的文件。
+ * 每次调用使用独立的对象，可以在多个线程中同时转码不同的文件
+ */
+public final class WavTranscoder {
+    /**
+     * 每次送入编码器的采样数（所有声道）
+     */
+    private static final int FRAME_SIZE = 4096;
+    /**
+     * 转码一次写完，不需要按录音的间隔回填文件头
+     */
+    private static final long SYNC_INTERVAL = 60 * 1000;
+
+    private WavTranscoder() {
+    }
+
+    /**
+     * 转码为IMA ADPCM（阻塞，不能在主线程中调用）
+     *
+     * @param srcPath 源文件路径（PCM WAV）
+     * @param dstPath 目标文件路径（已存在时覆盖）
+     * @return 目标文件大小，源文件不是PCM格式或无法解析时返回-1（不创建目标文件）
+     * @throws IOException 读写失败（目标文件可能不完整，由调用方删除）
+     */
+    public static long toAdpcm(String srcPath, String dstPath) throws IOException {
+        WavFormat format = new WavFormat();
+        try (RandomAccessFile src = new RandomAccessFile(srcPath, "r")) {
+            FileChannel channel = src.getChannel();
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (!format.parse(buffer) || format.format != AudioDurationProbe.WAVE_FORMAT_PCM) {
+                return -1;
+            }
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            AdpcmWavFileSink sink = new AdpcmWavFileSink(dstPath, SYNC_INTERVAL);
+            sink.onStart(format.sampleRate, format.channelCount);
+            try {
+                encode(buffer, format, sink);
+            } finally {
+                sink.onStop();
+            }
+        }
+        try (RandomAccessFile dst = new RandomAccessFile(dstPath, "rw")) {
+            dst.getFD().sync();
+            return dst.length();
+        }
+    }
+
+    /**
+     * 将data块的采样（8bit无符号或16bit有符号）按帧送入编码器
+     */
+    private static void encode(MappedByteBuffer buffer, WavFormat format, AdpcmWavFileSink sink)
+            throws IOException {
+        int bytesPerSample = format.bitsPerSample / 8;
+        //按整帧（所有声道）截断，忽略结尾不完整的采样
+        int frameBytes = bytesPerSample * format.channelCount;
+        int end = format.dataOffset + format.dataSize / frameBytes * frameBytes;
+        short[] frame = new short[FRAME_SIZE / format.channelCount * format.channelCount];
+        int position = format.dataOffset;
+        while (position < end) {
+            int length = Math.min(frame.length, (end - position) / bytesPerSample);
+            if (bytesPerSample == 2) {
+                for (int i = 0; i < length; i++, position += 2) {
+                    frame[i] = buffer.getShort(position);
+                }
+            } else {
+                for (int i = 0; i < length; i++, position++) {
+                    frame[i] = (short) (((buffer.get(position) & 0xFF) - 128) << 8);
+                }
+            }
+            sink.onFrame(frame, length);
+        }
+    }
+
+    /**
+     * 转码时使用的临时文件路径（不以录音文件后缀结尾，不会被当作录音）
+     */
+    public static String getTempPath(String path) {
+        return path + ".tmp";
+    }
+
+    /**
+     * 用转码后的临时文件替换源文件（同一目录内重命名，是原子操作）
+     *
+     * @return 是否替换成功，失败时删除临时文件
+     */
+    public static boolean replace(String tempPath, String path) {
+        File temp = new File(tempPath);
+        if (temp.renameTo(new File(path))) {
+            return true;
+        }
+        temp.delete();
+        return false;
+    }
+}
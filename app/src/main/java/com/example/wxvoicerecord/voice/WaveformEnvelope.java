@@ -0,0 +1,109 @@
+package com.example.wxvoicerecord.voice;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音波形缩略图（峰值包络）
+ * <p>
+ * 录音时按固定窗口统计峰值，结束时压缩为 {@link #SIZE} 个字节（0-255，按本条录音的最大峰值归一化），
+ * 保存在录音文件旁边（voice_xxx.env），列表显示时直接读取，不需要解码音频
+ */
+public final class WaveformEnvelope {
+    /**
+     * 包络字节数
+     */
+    public static final int SIZE = 64;
+    public static final String SUFFIX = ".env";
+
+    private WaveformEnvelope() {
+    }
+
+    /**
+     * 获取录音文件对应的包络文件路径
+     *
+     * @param audioPath 录音文件路径
+     * @return 包络文件路径
+     */
+    public static String getPath(String audioPath) {
+        int dot = audioPath.lastIndexOf('.');
+        if (dot <= audioPath.lastIndexOf('/')) {
+            return audioPath + SUFFIX;
+        }
+        return audioPath.substring(0, dot) + SUFFIX;
+    }
+
+    /**
+     * 读取包络（文件读写线程中调用）
+     *
+     * @param audioPath 录音文件路径
+     * @return 包络，没有包络文件时返回null
+     */
+    public static byte[] read(String audioPath) {
+        File file = new File(getPath(audioPath));
+        if (file.length() != SIZE) {
+            return null;
+        }
+        byte[] envelope = new byte[SIZE];
+        try (FileInputStream in = new FileInputStream(file)) {
+            int offset = 0;
+            while (offset < SIZE) {
+                int count = in.read(envelope, offset, SIZE - offset);
+                if (count < 0) {
+                    return null;
+                }
+                offset += count;
+            }
+            return envelope;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /**
+     * 保存包络
+     *
+     * @param audioPath 录音文件路径
+     * @param envelope  包络
+     * @throws IOException 写入失败
+     */
+    public static void write(String audioPath, byte[] envelope) throws IOException {
+        try (FileOutputStream out = new FileOutputStream(getPath(audioPath))) {
+            out.write(envelope, 0, SIZE);
+        }
+    }
+
+    /**
+     * 将窗口峰值压缩为包络（每段取最大值，按最大峰值归一化）
+     *
+     * @param peaks 每个窗口的峰值（0-255）
+     * @param count 窗口数
+     * @return 长度为 {@link #SIZE} 的包络
+     */
+    public static byte[] downsample(byte[] peaks, int count) {
+        byte[] envelope = new byte[SIZE];
+        if (count <= 0) {
+            return envelope;
+        }
+        int max = 1;
+        for (int i = 0; i < count; i++) {
+            max = Math.max(max, peaks[i] & 0xFF);
+        }
+        for (int i = 0; i < SIZE; i++) {
+            int from = (int) ((long) i * count / SIZE);
+            //窗口数少于SIZE时每段至少取一个窗口
+            int to = Math.max(from + 1, (int) ((long) (i + 1) * count / SIZE));
+            int peak = 0;
+            for (int j = from; j < to; j++) {
+                peak = Math.max(peak, peaks[j] & 0xFF);
+            }
+            envelope[i] = (byte) (peak * 255 / max);
+        }
+        return envelope;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.wxvoicerecord.voice;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.Nullable;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 语音波形缩略图（显示 {@link WaveformEnvelope}）
+ * <p>
+ * 按宽度能放下的竖线数合并包络（每组取最大值），绘制时不分配内存；没有包络时显示一条平线
+ */
+public class WaveformView extends View {
+    private static final int DEFAULT_COLOR = 0xFF999999;
+
+    private final Paint mPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final float[] mLines = new float[WaveformEnvelope.SIZE * 4];
+    /**
+     * 竖线宽度和间隔（单位：px）
+     */
+    private final float mBarWidth;
+    private final float mBarGap;
+    private byte[] mEnvelope;
+
+    public WaveformView(Context context) {
+        this(context, null);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public WaveformView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        float density = getResources().getDisplayMetrics().density;
+        mBarWidth = 2 * density;
+        mBarGap = 1.5f * density;
+        mPaint.setColor(DEFAULT_COLOR);
+        mPaint.setStrokeWidth(mBarWidth);
+        mPaint.setStrokeCap(Paint.Cap.ROUND);
+    }
+
+    /**
+     * 设置包络
+     *
+     * @param envelope 包络，为null时显示平线
+     */
+    public void setEnvelope(byte[] envelope) {
+        if (envelope == mEnvelope) {
+            return;
+        }
+        mEnvelope = envelope;
+        invalidate();
+    }
+
+    public void setColor(int color) {
+        if (mPaint.getColor() != color) {
+            mPaint.setColor(color);
+            invalidate();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        int left = getPaddingLeft();
+        int width = getWidth() - left - getPaddingRight();
+        int height = getHeight() - getPaddingTop() - getPaddingBottom();
+        if (width <= 0 || height <= 0) {
+            return;
+        }
+        int bars = (int) ((width + mBarGap) / (mBarWidth + mBarGap));
+        bars = Math.max(1, Math.min(bars, WaveformEnvelope.SIZE));
+        float centerY = getPaddingTop() + height / 2f;
+        //竖线最短为线宽，避免静音段看不到
+        float minHalf = mBarWidth / 2;
+        float maxHalf = Math.max(minHalf, (height - mBarWidth) / 2f);
+        for (int i = 0; i < bars; i++) {
+            int peak = 0;
+            if (mEnvelope != null) {
+                int from = i * WaveformEnvelope.SIZE / bars;
+                int to = (i + 1) * WaveformEnvelope.SIZE / bars;
+                for (int j = from; j < to; j++) {
+                    peak = Math.max(peak, mEnvelope[j] & 0xFF);
+                }
+            }
+            float half = Math.max(minHalf, maxHalf * peak / 255);
+            float x = left + mBarWidth / 2 + i * (mBarWidth + mBarGap);
+            int index = i * 4;
+            mLines[index] = x;
+            mLines[index + 1] = centerY - half;
+            mLines[index + 2] = x;
+            mLines[index + 3] = centerY + half;
+        }
+        canvas.drawLines(mLines, 0, bars * 4, mPaint);
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.wxvoicerecord.voice.codec;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * IMA ADPCM公共参数（与WAV格式0x0011的块结构一致）
+ * <p>
+ * 每个块以每声道4字节的块头开始（首个采样值 + 步长下标），之后每个采样占4bit，
+ * 多声道时每个声道的数据按4字节（8个采样）交错排列。每个块可以单独解码，方便定位播放
+ */
+public final class ImaAdpcm {
+    /**
+     * 每个块中每声道的块头字节数
+     */
+    public static final int BLOCK_HEADER_SIZE = 4;
+
+    static final int[] INDEX_TABLE = {
+            -1, -1, -1, -1, 2, 4, 6, 8,
+            -1, -1, -1, -1, 2, 4, 6, 8
+    };
+
+    static final int[] STEP_TABLE = {
+            7, 8, 9, 10, 11, 12, 13, 14, 16, 17,
+            19, 21, 23, 25, 28, 31, 34, 37, 41, 45,
+            50, 55, 60, 66, 73, 80, 88, 97, 107, 118,
+            130, 143, 157, 173, 190, 209, 230, 253, 279, 307,
+            337, 371, 408, 449, 494, 544, 598, 658, 724, 796,
+            876, 963, 1060, 1166, 1282, 1411, 1552, 1707, 1878, 2066,
+            2272, 2499, 2749, 3024, 3327, 3660, 4026, 4428, 4871, 5358,
+            5894, 6484, 7132, 7845, 8630, 9493, 10442, 11487, 12635, 13899,
+            15289, 16818, 18500, 20350, 22385, 24623, 27086, 29794, 32767
+    };
+
+    private ImaAdpcm() {
+    }
+
+    /**
+     * 按常用约定计算块大小（256字节 * 声道数 * 采样率倍数）
+     *
+     * @param sampleRate   采样率
+     * @param channelCount 声道数
+     * @return 每个块的字节数
+     */
+    public static int defaultBlockAlign(int sampleRate, int channelCount) {
+        return 256 * channelCount * Math.max(1, sampleRate / 11025);
+    }
+
+    /**
+     * 每个块中每声道的采样数（块头携带1个采样，其余每字节2个采样）
+     *
+     * @param blockAlign   每个块的字节数
+     * @param channelCount 声道数
+     * @return 每声道采样数
+     */
+    public static int samplesPerBlock(int blockAlign, int channelCount) {
+        return (blockAlign - BLOCK_HEADER_SIZE * channelCount) * 2 / channelCount + 1;
+    }
+
+    /**
+     * 编码指定采样数所需的字节数（用于最后一个不完整的块）
+     *
+     * @param samplesPerChannel 每声道采样数（包含块头中的采样）
+     * @param channelCount      声道数
+     * @return 字节数
+     */
+    public static int blockSize(int samplesPerChannel, int channelCount) {
+        if (samplesPerChannel <= 0) {
+            return 0;
+        }
+        //块头之后的采样按8个一组（4字节）对齐
+        int groups = (samplesPerChannel - 1 + 7) / 8;
+        return (BLOCK_HEADER_SIZE + groups * 4) * channelCount;
+    }
+
+    static int clampSample(int value) {
+        if (value > Short.MAX_VALUE) {
+            return Short.MAX_VALUE;
+        }
+        return Math.max(value, Short.MIN_VALUE);
+    }
+
+    static int clampIndex(int index) {
+        if (index < 0) {
+            return 0;
+        }
+        return Math.min(index, STEP_TABLE.length - 1);
+    }
+}
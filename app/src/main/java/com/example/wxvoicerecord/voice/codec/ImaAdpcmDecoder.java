@@ -0,0 +1,140 @@
+package com.example.wxvoicerecord.voice.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * IMA ADPCM解码器
+ * <p>
+ * 每个块独立解码（状态来自块头），可以直接定位到任意块开始解码，解码过程不分配内存
+ */
+public final class ImaAdpcmDecoder {
+    private final int mChannelCount;
+    private final int mBlockAlign;
+    private final int mSamplesPerBlock;
+    private final int[] mPredictors;
+    private final int[] mIndexes;
+
+    /**
+     * @param channelCount 声道数
+     * @param blockAlign   每个块的字节数
+     */
+    public ImaAdpcmDecoder(int channelCount, int blockAlign) {
+        if (channelCount <= 0 || blockAlign <= ImaAdpcm.BLOCK_HEADER_SIZE * channelCount) {
+            throw new IllegalArgumentException("Invalid block align: " + blockAlign);
+        }
+        mChannelCount = channelCount;
+        mBlockAlign = blockAlign;
+        mSamplesPerBlock = ImaAdpcm.samplesPerBlock(blockAlign, channelCount);
+        mPredictors = new int[channelCount];
+        mIndexes = new int[channelCount];
+    }
+
+    public int getBlockAlign() {
+        return mBlockAlign;
+    }
+
+    /**
+     * @return 每个块中每声道的采样数
+     */
+    public int getSamplesPerBlock() {
+        return mSamplesPerBlock;
+    }
+
+    /**
+     * 解码一个块（可以是最后一个不完整的块，其中可能包含编码时补齐的采样，实际采样数以fact块为准）
+     *
+     * @param in        编码数据
+     * @param offset    块起始下标
+     * @param length    块的字节数（不超过blockAlign）
+     * @param out       输出缓冲区（交错排列的PCM，至少能容纳 samplesPerBlock * 声道数 个采样）
+     * @param outOffset 输出起始下标
+     * @return 解码出的每声道采样数
+     */
+    public int decodeBlock(byte[] in, int offset, int length, short[] out, int outOffset) {
+        int channels = mChannelCount;
+        if (length < ImaAdpcm.BLOCK_HEADER_SIZE * channels) {
+            return 0;
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            int headerOffset = offset + ch * ImaAdpcm.BLOCK_HEADER_SIZE;
+            readHeader(ch, (short) ((in[headerOffset] & 0xFF) | in[headerOffset + 1] << 8),
+                    in[headerOffset + 2] & 0xFF, out, outOffset);
+        }
+        int groups = (Math.min(length, mBlockAlign) - ImaAdpcm.BLOCK_HEADER_SIZE * channels) / (4 * channels);
+        int position = offset + ImaAdpcm.BLOCK_HEADER_SIZE * channels;
+        for (int group = 0; group < groups; group++) {
+            int sampleIndex = 1 + group * 8;
+            for (int ch = 0; ch < channels; ch++) {
+                for (int i = 0; i < 4; i++) {
+                    int value = in[position++];
+                    decodeNibble(ch, value & 0x0F, out, outOffset, sampleIndex + i * 2);
+                    decodeNibble(ch, (value >> 4) & 0x0F, out, outOffset, sampleIndex + i * 2 + 1);
+                }
+            }
+        }
+        return 1 + groups * 8;
+    }
+
+    /**
+     * 从ByteBuffer中解码一个块（用于内存映射的文件，不改变buffer的position）
+     *
+     * @param in        编码数据
+     * @param offset    块起始位置
+     * @param length    块的字节数（不超过blockAlign）
+     * @param out       输出缓冲区
+     * @param outOffset 输出起始下标
+     * @return 解码出的每声道采样数
+     */
+    public int decodeBlock(ByteBuffer in, int offset, int length, short[] out, int outOffset) {
+        int channels = mChannelCount;
+        if (length < ImaAdpcm.BLOCK_HEADER_SIZE * channels) {
+            return 0;
+        }
+        for (int ch = 0; ch < channels; ch++) {
+            int headerOffset = offset + ch * ImaAdpcm.BLOCK_HEADER_SIZE;
+            readHeader(ch, (short) ((in.get(headerOffset) & 0xFF) | in.get(headerOffset + 1) << 8),
+                    in.get(headerOffset + 2) & 0xFF, out, outOffset);
+        }
+        int groups = (Math.min(length, mBlockAlign) - ImaAdpcm.BLOCK_HEADER_SIZE * channels) / (4 * channels);
+        int position = offset + ImaAdpcm.BLOCK_HEADER_SIZE * channels;
+        for (int group = 0; group < groups; group++) {
+            int sampleIndex = 1 + group * 8;
+            for (int ch = 0; ch < channels; ch++) {
+                for (int i = 0; i < 4; i++) {
+                    int value = in.get(position++);
+                    decodeNibble(ch, value & 0x0F, out, outOffset, sampleIndex + i * 2);
+                    decodeNibble(ch, (value >> 4) & 0x0F, out, outOffset, sampleIndex + i * 2 + 1);
+                }
+            }
+        }
+        return 1 + groups * 8;
+    }
+
+    private void readHeader(int channel, short sample, int index, short[] out, int outOffset) {
+        mPredictors[channel] = sample;
+        mIndexes[channel] = ImaAdpcm.clampIndex(index);
+        out[outOffset + channel] = sample;
+    }
+
+    private void decodeNibble(int channel, int nibble, short[] out, int outOffset, int sampleIndex) {
+        int index = mIndexes[channel];
+        int step = ImaAdpcm.STEP_TABLE[index];
+        int diff = step >> 3;
+        if ((nibble & 4) != 0) {
+            diff += step;
+        }
+        if ((nibble & 2) != 0) {
+            diff += step >> 1;
+        }
+        if ((nibble & 1) != 0) {
+            diff += step >> 2;
+        }
+        int predictor = (nibble & 8) != 0 ? mPredictors[channel] - diff : mPredictors[channel] + diff;
+        predictor = ImaAdpcm.clampSample(predictor);
+        mPredictors[channel] = predictor;
+        mIndexes[channel] = ImaAdpcm.clampIndex(index + ImaAdpcm.INDEX_TABLE[nibble]);
+        out[outOffset + sampleIndex * mChannelCount + channel] = (short) predictor;
+    }
+}
@@ -0,0 +1,143 @@
+package com.example.wxvoicerecord.voice.codec;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * IMA ADPCM流式编码器（4:1压缩）
+ * <p>
+ * 按块编码交错排列的16bit PCM，各声道的预测值和步长下标在块之间延续，编码过程不分配内存
+ */
+public final class ImaAdpcmEncoder {
+    private final int mChannelCount;
+    private final int mBlockAlign;
+    private final int mSamplesPerBlock;
+    private final int[] mPredictors;
+    private final int[] mIndexes;
+
+    /**
+     * @param channelCount 声道数
+     * @param blockAlign   每个块的字节数
+     */
+    public ImaAdpcmEncoder(int channelCount, int blockAlign) {
+        if (channelCount <= 0 || blockAlign <= ImaAdpcm.BLOCK_HEADER_SIZE * channelCount
+                || (blockAlign - ImaAdpcm.BLOCK_HEADER_SIZE * channelCount) % (4 * channelCount) != 0) {
+            throw new IllegalArgumentException("Invalid block align: " + blockAlign);
+        }
+        mChannelCount = channelCount;
+        mBlockAlign = blockAlign;
+        mSamplesPerBlock = ImaAdpcm.samplesPerBlock(blockAlign, channelCount);
+        mPredictors = new int[channelCount];
+        mIndexes = new int[channelCount];
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public int getBlockAlign() {
+        return mBlockAlign;
+    }
+
+    /**
+     * @return 每个块中每声道的采样数
+     */
+    public int getSamplesPerBlock() {
+        return mSamplesPerBlock;
+    }
+
+    /**
+     * 重置编码状态（开始新的文件时调用）
+     */
+    public void reset() {
+        for (int i = 0; i < mChannelCount; i++) {
+            mPredictors[i] = 0;
+            mIndexes[i] = 0;
+        }
+    }
+
+    /**
+     * 编码一个块
+     *
+     * @param pcm               交错排列的PCM数据
+     * @param offset            pcm起始下标
+     * @param samplesPerChannel 每声道采样数（不超过 {@link #getSamplesPerBlock()}，只有最后一个块可以不满）
+     * @param out               输出缓冲区
+     * @param outOffset         输出起始下标
+     * @return 写入的字节数
+     */
+    public int encodeBlock(short[] pcm, int offset, int samplesPerChannel, byte[] out, int outOffset) {
+        if (samplesPerChannel <= 0) {
+            return 0;
+        }
+        if (samplesPerChannel > mSamplesPerBlock) {
+            throw new IllegalArgumentException("Too many samples: " + samplesPerChannel);
+        }
+        int channels = mChannelCount;
+        //块头：首个采样原样保存，作为本块的预测起点
+        for (int ch = 0; ch < channels; ch++) {
+            int sample = pcm[offset + ch];
+            mPredictors[ch] = sample;
+            int headerOffset = outOffset + ch * ImaAdpcm.BLOCK_HEADER_SIZE;
+            out[headerOffset] = (byte) sample;
+            out[headerOffset + 1] = (byte) (sample >> 8);
+            out[headerOffset + 2] = (byte) mIndexes[ch];
+            out[headerOffset + 3] = 0;
+        }
+        int size = ImaAdpcm.blockSize(samplesPerChannel, channels);
+        int position = outOffset + ImaAdpcm.BLOCK_HEADER_SIZE * channels;
+        //之后的采样每8个一组，每组4字节，多声道时按组交错
+        for (int start = 1; start < samplesPerChannel; start += 8) {
+            for (int ch = 0; ch < channels; ch++) {
+                for (int i = 0; i < 8; i += 2) {
+                    int low = encodeSample(ch, sampleAt(pcm, offset, start + i, ch, samplesPerChannel));
+                    int high = encodeSample(ch, sampleAt(pcm, offset, start + i + 1, ch, samplesPerChannel));
+                    out[position++] = (byte) (low | high << 4);
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 不满一组的部分用最后一个采样补齐
+     */
+    private short sampleAt(short[] pcm, int offset, int index, int channel, int samplesPerChannel) {
+        if (index >= samplesPerChannel) {
+            index = samplesPerChannel - 1;
+        }
+        return pcm[offset + index * mChannelCount + channel];
+    }
+
+    private int encodeSample(int channel, int sample) {
+        int predictor = mPredictors[channel];
+        int index = mIndexes[channel];
+        int step = ImaAdpcm.STEP_TABLE[index];
+        int diff = sample - predictor;
+        int nibble = 0;
+        if (diff < 0) {
+            nibble = 8;
+            diff = -diff;
+        }
+        int delta = step >> 3;
+        if (diff >= step) {
+            nibble |= 4;
+            diff -= step;
+            delta += step;
+        }
+        step >>= 1;
+        if (diff >= step) {
+            nibble |= 2;
+            diff -= step;
+            delta += step;
+        }
+        step >>= 1;
+        if (diff >= step) {
+            nibble |= 1;
+            delta += step;
+        }
+        predictor = (nibble & 8) != 0 ? predictor - delta : predictor + delta;
+        mPredictors[channel] = ImaAdpcm.clampSample(predictor);
+        mIndexes[channel] = ImaAdpcm.clampIndex(index + ImaAdpcm.INDEX_TABLE[nibble]);
+        return nibble;
+    }
+}
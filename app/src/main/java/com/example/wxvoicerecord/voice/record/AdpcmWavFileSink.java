@@ -0,0 +1,218 @@
+package com.example.wxvoicerecord.voice.record;
+
+import com.example.wxvoicerecord.voice.codec.ImaAdpcm;
+import com.example.wxvoicerecord.voice.codec.ImaAdpcmEncoder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 将PCM帧编码为IMA ADPCM并写入WAV文件（格式0x0011），文件大小约为16bit PCM的1/4
+ * <p>
+ * PCM帧先累积到一个块大小再编码写入，每写入一个同步间隔的数据就回填一次文件头中的长度字段，
+ * 结束时编码最后不满的块并回填文件头
+ */
+public class AdpcmWavFileSink implements IRecordFileSink {
+    private final String mFilePath;
+    private final long mSyncIntervalMs;
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    private ImaAdpcmEncoder mEncoder;
+    /**
+     * 待编码的PCM块
+     */
+    private short[] mPcmBlock;
+    /**
+     * 待编码块中已有的采样数（所有声道）
+     */
+    private int mPcmCount;
+    /**
+     * 编码输出缓冲区
+     */
+    private byte[] mEncodedBlock;
+    /**
+     * 写入FileChannel的复用缓冲区
+     */
+    private ByteBuffer mWriteBuffer;
+    /**
+     * 回填长度字段用的缓冲区
+     */
+    private final ByteBuffer mSizeBuffer = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+    private int mSampleRate;
+    private int mChannelCount;
+    /**
+     * 已写入的每声道采样数
+     */
+    private volatile long mSampleCount;
+    /**
+     * 已写入的编码数据字节数
+     */
+    private long mDataSize;
+    /**
+     * 上次回填文件头时的每声道采样数
+     */
+    private long mSyncedSampleCount;
+    /**
+     * 同步间隔对应的每声道采样数
+     */
+    private long mSyncIntervalSamples;
+
+    public AdpcmWavFileSink(String filePath) {
+        this(filePath, WavFileSink.DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param filePath       文件路径
+     * @param syncIntervalMs 文件头同步间隔（单位：ms）
+     */
+    public AdpcmWavFileSink(String filePath, long syncIntervalMs) {
+        mFilePath = filePath;
+        mSyncIntervalMs = syncIntervalMs;
+    }
+
+    @Override
+    public String getFilePath() {
+        return mFilePath;
+    }
+
+    @Override
+    public long getDurationMs() {
+        return mSampleRate <= 0 ? 0 : mSampleCount * 1000 / mSampleRate;
+    }
+
+    /**
+     * 截断到编码块边界（向上取整，最多多保留一个块）
+     */
+    @Override
+    public void truncate(long sampleCount) throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        if (sampleCount >= mSampleCount) {
+            //截断位置在还未编码的数据中
+            long pending = (sampleCount - mSampleCount) * mChannelCount;
+            mPcmCount = (int) Math.min(mPcmCount, pending);
+            return;
+        }
+        int samplesPerBlock = mEncoder.getSamplesPerBlock();
+        long blocks = (sampleCount + samplesPerBlock - 1) / samplesPerBlock;
+        mDataSize = blocks * mEncoder.getBlockAlign();
+        mSampleCount = blocks * samplesPerBlock;
+        mPcmCount = 0;
+        mChannel.truncate(WavHeader.IMA_ADPCM_HEADER_SIZE + mDataSize);
+        mChannel.position(WavHeader.IMA_ADPCM_HEADER_SIZE + mDataSize);
+        syncHeader();
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) throws IOException {
+        if (mEncoder == null || mSampleRate != sampleRate || mChannelCount != channelCount) {
+            int blockAlign = ImaAdpcm.defaultBlockAlign(sampleRate, channelCount);
+            mEncoder = new ImaAdpcmEncoder(channelCount, blockAlign);
+            mPcmBlock = new short[mEncoder.getSamplesPerBlock() * channelCount];
+            mEncodedBlock = new byte[blockAlign];
+            mWriteBuffer = ByteBuffer.allocateDirect(Math.max(blockAlign, WavHeader.IMA_ADPCM_HEADER_SIZE));
+        }
+        mEncoder.reset();
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mPcmCount = 0;
+        mSampleCount = 0;
+        mDataSize = 0;
+        mSyncedSampleCount = 0;
+        mSyncIntervalSamples = Math.max(1, mSyncIntervalMs * sampleRate / 1000);
+        //第一次录音时目录可能还不存在，在打开文件的线程中创建
+        File dir = new File(mFilePath).getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        mFile = new RandomAccessFile(mFilePath, "rw");
+        mChannel = mFile.getChannel();
+        mChannel.truncate(0);
+        byte[] header = new byte[WavHeader.IMA_ADPCM_HEADER_SIZE];
+        WavHeader.writeImaAdpcmHeader(header, mSampleRate, mChannelCount, mEncoder.getBlockAlign(),
+                mEncoder.getSamplesPerBlock(), 0, 0);
+        write(header, header.length);
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        int offset = 0;
+        while (offset < length) {
+            int count = Math.min(length - offset, mPcmBlock.length - mPcmCount);
+            System.arraycopy(frame, offset, mPcmBlock, mPcmCount, count);
+            mPcmCount += count;
+            offset += count;
+            if (mPcmCount == mPcmBlock.length) {
+                writeBlock();
+            }
+        }
+        if (mSampleCount - mSyncedSampleCount >= mSyncIntervalSamples) {
+            syncHeader();
+        }
+    }
+
+    @Override
+    public void onStop() throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        try {
+            writeBlock();
+            syncHeader();
+        } finally {
+            mFile.close();
+            mFile = null;
+            mChannel = null;
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        int samplesPerChannel = mPcmCount / mChannelCount;
+        if (samplesPerChannel == 0) {
+            return;
+        }
+        int size = mEncoder.encodeBlock(mPcmBlock, 0, samplesPerChannel, mEncodedBlock, 0);
+        write(mEncodedBlock, size);
+        mDataSize += size;
+        mSampleCount += samplesPerChannel;
+        mPcmCount = 0;
+    }
+
+    private void write(byte[] data, int length) throws IOException {
+        mWriteBuffer.clear();
+        mWriteBuffer.put(data, 0, length);
+        mWriteBuffer.flip();
+        while (mWriteBuffer.hasRemaining()) {
+            mChannel.write(mWriteBuffer);
+        }
+    }
+
+    /**
+     * 回填RIFF、fact和data块的长度（不改变写入位置）
+     */
+    private void syncHeader() throws IOException {
+        writeSize(WavHeader.RIFF_SIZE_OFFSET, mDataSize + WavHeader.IMA_ADPCM_HEADER_SIZE - 8);
+        writeSize(WavHeader.IMA_ADPCM_FACT_OFFSET, mSampleCount);
+        writeSize(WavHeader.IMA_ADPCM_DATA_SIZE_OFFSET, mDataSize);
+        mSyncedSampleCount = mSampleCount;
+    }
+
+    private void writeSize(long position, long value) throws IOException {
+        mSizeBuffer.clear();
+        mSizeBuffer.putInt((int) value);
+        mSizeBuffer.flip();
+        while (mSizeBuffer.hasRemaining()) {
+            position += mChannel.write(mSizeBuffer, position);
+        }
+    }
+}
@@ -0,0 +1,505 @@
+package com.example.wxvoicerecord.voice.record;
+
+import android.annotation.SuppressLint;
+import android.media.AudioFormat;
+import android.media.AudioRecord;
+import android.media.MediaRecorder;
+import android.os.Process;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.example.wxvoicerecord.BuildConfig;
+
+import java.io.IOException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 基于AudioRecord的PCM录音引擎
+ * <p>
+ * 录音线程从AudioRecord中读取固定大小的PCM帧写入预分配的环形缓冲区，分发线程从缓冲区中取出帧
+ * 依次交给挂载的 {@link IFrameSink} 处理（文件写入、编码、电平计算等）
+ * <p>
+ * 录音线程只做读取，不受文件IO的影响，整个录音过程不再分配内存
+ * <p>
+ * 可以通过 {@link #prepare()} 提前创建AudioRecord和录音、分发线程（两次录音之间线程挂起），
+ * 按下录音时直接开始采集，不再创建线程，减少首帧延迟
+ * <p>
+ * 停止录音和释放都不等待文件写完，分发线程处理完剩余的帧并结束所有sink后通过 {@link OnStopListener} 回调
+ */
+public class AudioCaptureEngine {
+    private final static String TAG = "AudioCaptureEngine";
+    /**
+     * 默认采样率
+     */
+    public final static int DEFAULT_SAMPLE_RATE = 16000;
+    /**
+     * 每帧时长（单位：ms）
+     */
+    public final static int FRAME_DURATION_MS = 20;
+    /**
+     * 环形缓冲区帧数量（约1.28s，足够覆盖分发线程的短暂阻塞）
+     */
+    private final static int RING_CAPACITY = 64;
+    /**
+     * 分发线程空闲时的最长等待时间（单位：ns）
+     */
+    private final static long DISPATCH_PARK_NANOS = FRAME_DURATION_MS * 1000_000L;
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+    /**
+     * 每帧采样数（多声道时为所有声道的采样总数）
+     */
+    private final int mFrameSize;
+    private final PcmRingBuffer mRingBuffer;
+    /**
+     * 缓冲区满时用于读取并丢弃数据的临时帧
+     */
+    private final short[] mOverrunFrame;
+    /**
+     * 挂载的sink（写时复制，分发时按下标遍历，避免创建迭代器）
+     */
+    private volatile IFrameSink[] mSinks = new IFrameSink[0];
+    /**
+     * 处理失败的sink，之后不再分发
+     */
+    private boolean[] mFailedSinks = new boolean[0];
+    private AudioRecord mAudioRecord;
+    /**
+     * 录音、分发线程（释放时置为null，线程随后退出）
+     */
+    private volatile Thread mCaptureThread;
+    private volatile Thread mDispatchThread;
+    private volatile boolean isCapturing;
+    /**
+     * 录音线程还在读取本次录音的数据
+     */
+    private volatile boolean isCaptureActive;
+    /**
+     * 分发线程还在处理本次录音（分发剩余的帧、结束sink）
+     */
+    private volatile boolean isDispatching;
+    /**
+     * 正在停止时调用了 {@link #release()}，由分发线程在结束sink后释放
+     */
+    private boolean isReleasePending;
+    private volatile boolean hasSinkError;
+    /**
+     * 首帧回调
+     */
+    private volatile OnFirstFrameListener mOnFirstFrameListener;
+    /**
+     * 本次录音的停止回调
+     */
+    private volatile OnStopListener mOnStopListener;
+
+    public AudioCaptureEngine() {
+        this(DEFAULT_SAMPLE_RATE, 1);
+    }
+
+    public AudioCaptureEngine(int sampleRate, int channelCount) {
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mFrameSize = sampleRate * FRAME_DURATION_MS / 1000 * channelCount;
+        mRingBuffer = new PcmRingBuffer(RING_CAPACITY, mFrameSize);
+        mOverrunFrame = new short[mFrameSize];
+    }
+
+    public void setOnFirstFrameListener(OnFirstFrameListener listener) {
+        mOnFirstFrameListener = listener;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public boolean isCapturing() {
+        return isCapturing;
+    }
+
+    /**
+     * 是否已经停止采集，但还在分发剩余的帧（此时不能开始下一次录音）
+     *
+     * @return 是否正在停止
+     */
+    public synchronized boolean isStopping() {
+        return !isCapturing && isDispatching;
+    }
+
+    /**
+     * 本次录音是否有sink处理失败（例如写文件失败）
+     *
+     * @return 是否有sink处理失败
+     */
+    public boolean hasSinkError() {
+        return hasSinkError;
+    }
+
+    /**
+     * 本次录音因缓冲区满而丢弃的帧数
+     *
+     * @return 丢弃的帧数
+     */
+    public long getOverrunCount() {
+        return mRingBuffer.getOverrunCount();
+    }
+
+    /**
+     * 挂载sink，只能在录音开始前（上一次录音停止完成后）调用
+     *
+     * @param sink sink
+     */
+    public synchronized void addSink(IFrameSink sink) {
+        if (isCapturing || isStopping()) {
+            throw new IllegalStateException("Can not add sink while capturing.");
+        }
+        IFrameSink[] sinks = new IFrameSink[mSinks.length + 1];
+        System.arraycopy(mSinks, 0, sinks, 0, mSinks.length);
+        sinks[mSinks.length] = sink;
+        mSinks = sinks;
+    }
+
+    /**
+     * 移除所有sink，只能在录音停止完成后调用
+     */
+    public synchronized void clearSinks() {
+        if (isCapturing || isStopping()) {
+            throw new IllegalStateException("Can not clear sinks while capturing.");
+        }
+        mSinks = new IFrameSink[0];
+    }
+
+    /**
+     * 预热：提前创建AudioRecord和录音、分发线程（不开始采集），之后的 {@link #start()} 可以立即开始录音
+     * <p>
+     * 释放还没完成（上一次录音还在停止）时调用会取消释放
+     *
+     * @return 是否创建成功
+     */
+    public synchronized boolean prepare() {
+        isReleasePending = false;
+        if (mAudioRecord == null && !createAudioRecord()) {
+            return false;
+        }
+        if (mDispatchThread == null) {
+            mDispatchThread = new Thread(this::dispatchLoop, "VoiceDispatch");
+            mCaptureThread = new Thread(this::captureLoop, "VoiceCapture");
+            mDispatchThread.start();
+            mCaptureThread.start();
+        }
+        return true;
+    }
+
+    @SuppressLint("MissingPermission")
+    private boolean createAudioRecord() {
+        int channelConfig = mChannelCount == 1 ? AudioFormat.CHANNEL_IN_MONO
+                : AudioFormat.CHANNEL_IN_STEREO;
+        int minBufferSize = AudioRecord.getMinBufferSize(mSampleRate, channelConfig,
+                AudioFormat.ENCODING_PCM_16BIT);
+        if (minBufferSize <= 0) {
+            return false;
+        }
+        int bufferSize = Math.max(minBufferSize, mFrameSize * 2 * 4);
+        try {
+            mAudioRecord = new AudioRecord(MediaRecorder.AudioSource.MIC, mSampleRate,
+                    channelConfig, AudioFormat.ENCODING_PCM_16BIT, bufferSize);
+            if (mAudioRecord.getState() != AudioRecord.STATE_INITIALIZED) {
+                releaseAudioRecord();
+                return false;
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            releaseAudioRecord();
+            return false;
+        }
+        return true;
+    }
+
+    public synchronized boolean isPrepared() {
+        return mAudioRecord != null;
+    }
+
+    /**
+     * 开始录音
+     * <p>
+     * 先开始采集再初始化sink（sink的初始化在分发线程中进行，期间的数据暂存在环形缓冲区中）
+     *
+     * @return 是否成功开始
+     */
+    public synchronized boolean start() {
+        if (isCapturing) {
+            return true;
+        }
+        if (isStopping()) {
+            //上一次录音的文件还没有写完
+            return false;
+        }
+        if (!prepare()) {
+            return false;
+        }
+        mRingBuffer.clear();
+        try {
+            mAudioRecord.startRecording();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+            releaseAudioRecord();
+            return false;
+        }
+        if (mAudioRecord.getRecordingState() != AudioRecord.RECORDSTATE_RECORDING) {
+            //麦克风被其他应用占用
+            releaseAudioRecord();
+            return false;
+        }
+
+        hasSinkError = false;
+        isCaptureActive = true;
+        isDispatching = true;
+        isCapturing = true;
+        LockSupport.unpark(mDispatchThread);
+        LockSupport.unpark(mCaptureThread);
+        return true;
+    }
+
+    /**
+     * 停止录音，不等待剩余的帧分发完成，立即返回
+     * <p>
+     * AudioRecord会被保留用于下一次录音，不再使用时需要调用 {@link #release()}
+     *
+     * @param listener 停止完成回调（在分发线程中回调），可以为null；没有在录音时不会回调
+     */
+    public synchronized void stop(OnStopListener listener) {
+        if (!isCapturing) {
+            return;
+        }
+        mOnStopListener = listener;
+        isCapturing = false;
+        try {
+            mAudioRecord.stop();
+        } catch (IllegalStateException e) {
+            e.printStackTrace();
+        }
+        LockSupport.unpark(mDispatchThread);
+    }
+
+    /**
+     * 停止录音并释放AudioRecord和录音、分发线程，不等待剩余的帧分发完成，立即返回
+     * <p>
+     * 正在停止时由分发线程在所有sink结束后释放
+     */
+    public synchronized void release() {
+        stop(null);
+        if (isDispatching) {
+            isReleasePending = true;
+            return;
+        }
+        releaseResources();
+    }
+
+    /**
+     * 录音线程：只负责从AudioRecord读取数据，两次录音之间挂起
+     */
+    private void captureLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+        Thread thread = Thread.currentThread();
+        while (thread == mCaptureThread) {
+            if (!isCaptureActive) {
+                LockSupport.park(this);
+                continue;
+            }
+            capture();
+            isCaptureActive = false;
+            LockSupport.unpark(mDispatchThread);
+        }
+    }
+
+    private void capture() {
+        AudioRecord audioRecord = mAudioRecord;
+        Thread dispatchThread = mDispatchThread;
+        boolean firstFrame = true;
+        while (isCapturing) {
+            short[] frame = mRingBuffer.acquireWrite();
+            if (frame == null) {
+                //分发线程跟不上，读到临时缓冲区中丢弃，避免AudioRecord内部溢出
+                frame = mOverrunFrame;
+            }
+            int read = readFully(audioRecord, frame);
+            if (read <= 0) {
+                break;
+            }
+            if (frame == mOverrunFrame) {
+                mRingBuffer.markOverrun();
+            } else {
+                mRingBuffer.commitWrite(read);
+                LockSupport.unpark(dispatchThread);
+            }
+            if (firstFrame) {
+                firstFrame = false;
+                OnFirstFrameListener listener = mOnFirstFrameListener;
+                if (listener != null) {
+                    listener.onFirstFrame(SystemClock.uptimeMillis());
+                }
+            }
+        }
+    }
+
+    /**
+     * 读满一帧（停止录音时可能只读到部分数据）
+     */
+    private int readFully(AudioRecord audioRecord, short[] frame) {
+        int offset = 0;
+        while (offset < mFrameSize) {
+            int read = audioRecord.read(frame, offset, mFrameSize - offset);
+            if (read <= 0) {
+                break;
+            }
+            offset += read;
+        }
+        return offset;
+    }
+
+    /**
+     * 分发线程：将环形缓冲区中的帧分发给各个sink，两次录音之间挂起
+     */
+    private void dispatchLoop() {
+        Process.setThreadPriority(Process.THREAD_PRIORITY_AUDIO);
+        Thread thread = Thread.currentThread();
+        while (thread == mDispatchThread) {
+            if (!isDispatching) {
+                LockSupport.park(this);
+                continue;
+            }
+            dispatch();
+        }
+    }
+
+    private void dispatch() {
+        startSinks();
+        while (true) {
+            //先判断录音线程是否读取结束再读取，保证最后写入的一帧也能被分发
+            boolean captureFinished = !isCapturing && !isCaptureActive;
+            short[] frame = mRingBuffer.peekRead();
+            if (frame == null) {
+                if (captureFinished) {
+                    break;
+                }
+                LockSupport.parkNanos(this, DISPATCH_PARK_NANOS);
+                continue;
+            }
+            dispatchFrame(frame, mRingBuffer.peekLength());
+            mRingBuffer.releaseRead();
+        }
+        stopSinks();
+
+        if (BuildConfig.DEBUG && mRingBuffer.getOverrunCount() > 0) {
+            Log.w(TAG, "丢弃帧数：" + mRingBuffer.getOverrunCount());
+        }
+        OnStopListener listener = mOnStopListener;
+        mOnStopListener = null;
+        boolean sinkError = hasSinkError;
+        synchronized (this) {
+            isDispatching = false;
+            if (isReleasePending) {
+                isReleasePending = false;
+                releaseResources();
+            }
+        }
+        if (listener != null) {
+            listener.onStop(sinkError);
+        }
+    }
+
+    private void startSinks() {
+        IFrameSink[] sinks = mSinks;
+        if (mFailedSinks.length != sinks.length) {
+            mFailedSinks = new boolean[sinks.length];
+        }
+        for (int i = 0; i < sinks.length; i++) {
+            mFailedSinks[i] = false;
+            try {
+                sinks[i].onStart(mSampleRate, mChannelCount);
+            } catch (IOException e) {
+                e.printStackTrace();
+                mFailedSinks[i] = true;
+                hasSinkError = true;
+            }
+        }
+    }
+
+    private void dispatchFrame(short[] frame, int length) {
+        IFrameSink[] sinks = mSinks;
+        for (int i = 0; i < sinks.length; i++) {
+            if (mFailedSinks[i]) {
+                continue;
+            }
+            try {
+                sinks[i].onFrame(frame, length);
+            } catch (IOException e) {
+                e.printStackTrace();
+                mFailedSinks[i] = true;
+                hasSinkError = true;
+            }
+        }
+    }
+
+    private void stopSinks() {
+        IFrameSink[] sinks = mSinks;
+        for (int i = 0; i < sinks.length; i++) {
+            try {
+                sinks[i].onStop();
+            } catch (IOException e) {
+                e.printStackTrace();
+                hasSinkError = true;
+            }
+        }
+    }
+
+    private void releaseAudioRecord() {
+        if (mAudioRecord != null) {
+            mAudioRecord.release();
+            mAudioRecord = null;
+        }
+    }
+
+    /**
+     * 释放AudioRecord，并让录音、分发线程退出（不等待线程结束）
+     */
+    private void releaseResources() {
+        releaseAudioRecord();
+        Thread captureThread = mCaptureThread;
+        Thread dispatchThread = mDispatchThread;
+        mCaptureThread = null;
+        mDispatchThread = null;
+        LockSupport.unpark(captureThread);
+        LockSupport.unpark(dispatchThread);
+    }
+
+    /**
+     * 首帧回调
+     */
+    public interface OnFirstFrameListener {
+        /**
+         * 采集到第一帧数据（在录音线程中回调）
+         *
+         * @param uptimeMillis 采集到首帧的时间（SystemClock.uptimeMillis()）
+         */
+        void onFirstFrame(long uptimeMillis);
+    }
+
+    /**
+     * 停止完成回调
+     */
+    public interface OnStopListener {
+        /**
+         * 剩余的帧已分发完成，所有sink已结束（在分发线程中回调）
+         *
+         * @param hasSinkError 本次录音是否有sink处理失败
+         */
+        void onStop(boolean hasSinkError);
+    }
+}
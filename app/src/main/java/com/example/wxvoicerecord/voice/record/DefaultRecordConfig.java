@@ -1,11 +1,7 @@
 package com.example.wxvoicerecord.voice.record;
 
-import android.text.TextUtils;
-
 import com.example.wxvoicerecord.MyApp;
 
-import java.io.File;
-
 /**
  * Created by Horrarndoo on 2022/9/23.
  * <p>
@@ -24,12 +20,16 @@ public class DefaultRecordConfig implements IRecordConfig {
      * 录音剩余时间提醒阈值（录音剩余时间少于这个值就提醒，单位：ms）
      */
     public final static int WHAT_LEFT_TIME_TO_NOTICE = 1000 * 10;
+    /**
+     * 录音文件名前缀、后缀
+     */
+    public final static String RECORD_FILE_PREFIX = "voice_";
+    public final static String RECORD_FILE_SUFFIX = ".wav";
 
     private String fileDir;
 
     public DefaultRecordConfig() {
-        fileDir = MyApp.getContext().getFilesDir() + "/record";
-        makeDirs(fileDir);
+        fileDir = getRecordDir();
     }
 
     @Override
@@ -47,22 +47,94 @@ public class DefaultRecordConfig implements IRecordConfig {
         return WHAT_LEFT_TIME_TO_NOTICE;
     }
 
+    @Override
+    public int getCodec() {
+        //系统MediaPlayer不支持播放IMA ADPCM，默认使用PCM
+        return CODEC_PCM;
+    }
+
+    @Override
+    public int getSampleRate() {
+        return SAMPLE_RATE;
+    }
+
+    @Override
+    public int getChannelCount() {
+        return CHANNEL_COUNT;
+    }
+
+    @Override
+    public int getBitDepth() {
+        return BIT_DEPTH;
+    }
+
+    @Override
+    public boolean isTrimSilence() {
+        return true;
+    }
+
+    @Override
+    public long getSilencePaddingTime() {
+        return SILENCE_PADDING_TIME;
+    }
+
+    @Override
+    public long getFileSyncInterval() {
+        return FILE_SYNC_INTERVAL;
+    }
+
+    @Override
+    public long getMemoryBufferTime() {
+        return MEMORY_BUFFER_TIME;
+    }
+
     @Override
     public String getRecordFileName() {
-        return fileDir + "/voice_" + System.currentTimeMillis() + ".wav";
+        return getRecordFilePath(fileDir, System.currentTimeMillis());
     }
 
     /**
-     * 创建目录（可以是多个）
+     * 获取录音文件路径（文件名为 voice_开始录音的时间戳.wav，时间戳同时作为消息id）
      *
-     * @param filePath 目录路径
-     * @return 如果路径为空时，返回false；如果目录创建成功，则返回true，否则返回false
+     * @param dir 录音文件目录
+     * @param id  消息id
+     * @return 录音文件路径
      */
-    public boolean makeDirs(String filePath) {
-        if (TextUtils.isEmpty(filePath)) {
-            return false;
+    public static String getRecordFilePath(String dir, long id) {
+        return dir + "/" + RECORD_FILE_PREFIX + id + RECORD_FILE_SUFFIX;
+    }
+
+    /**
+     * 从录音文件名（或路径）中解析消息id
+     *
+     * @param fileName 录音文件名或路径
+     * @return 消息id，不是录音文件时返回-1
+     */
+    public static long parseRecordId(String fileName) {
+        int start = fileName.lastIndexOf('/') + 1;
+        if (!fileName.startsWith(RECORD_FILE_PREFIX, start) || !fileName.endsWith(RECORD_FILE_SUFFIX)) {
+            return -1;
         }
-        File folder = new File(filePath);
-        return folder.exists() && folder.isDirectory() || folder.mkdirs();
+        int end = fileName.length() - RECORD_FILE_SUFFIX.length();
+        long id = 0;
+        for (int i = start + RECORD_FILE_PREFIX.length(); i < end; i++) {
+            char c = fileName.charAt(i);
+            if (c < '0' || c > '9' || id > (Long.MAX_VALUE - 9) / 10) {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return end > start + RECORD_FILE_PREFIX.length() ? id : -1;
+    }
+
+    /**
+     * 获取录音文件目录
+     *
+     * @return 录音文件目录
+     */
+    public static String getRecordDir() {
+        //getFilesDir()每次调用都会检查目录是否存在，这里只拼接路径（与getFilesDir()相同），
+        //目录在录音文件写入时（打开文件的线程中）创建
+        return MyApp.getContext().getApplicationInfo().dataDir + "/files/record";
     }
 }
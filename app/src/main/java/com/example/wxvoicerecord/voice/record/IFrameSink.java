@@ -0,0 +1,39 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.io.IOException;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * PCM帧接收者（挂载到 {@link AudioCaptureEngine} 上，例如文件写入、编码、电平计算）
+ * <p>
+ * 所有回调都在录音引擎的分发线程中执行，回调中不应该再分配内存或执行耗时的阻塞操作
+ */
+public interface IFrameSink {
+    /**
+     * 开始录音
+     *
+     * @param sampleRate   采样率
+     * @param channelCount 声道数
+     * @throws IOException 初始化失败
+     */
+    void onStart(int sampleRate, int channelCount) throws IOException;
+
+    /**
+     * 收到一帧PCM数据
+     * <p>
+     * frame在回调结束后会被复用，如果需要保留数据必须自行拷贝
+     *
+     * @param frame  16bit PCM数据（多声道时交错排列）
+     * @param length 有效采样数
+     * @throws IOException 处理失败
+     */
+    void onFrame(short[] frame, int length) throws IOException;
+
+    /**
+     * 录音结束
+     *
+     * @throws IOException 收尾失败
+     */
+    void onStop() throws IOException;
+}
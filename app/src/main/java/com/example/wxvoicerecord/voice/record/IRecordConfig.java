@@ -4,8 +4,43 @@ package com.example.wxvoicerecord.voice.record;
  * Created by Horrarndoo on 2022/9/23.
  * <p>
  * 录音配置
+ * <p>
+ * 新增的配置项都有默认实现（返回下面的默认值），已有的实现类不需要修改
  */
 public interface IRecordConfig {
+    /**
+     * 编码格式：PCM（WAV）
+     */
+    int CODEC_PCM = 0;
+    /**
+     * 编码格式：IMA ADPCM（WAV，约为16bit PCM大小的1/4）
+     */
+    int CODEC_IMA_ADPCM = 1;
+    /**
+     * 采样率（单位：Hz，语音使用16k即可）
+     */
+    int SAMPLE_RATE = 16000;
+    /**
+     * 声道数
+     */
+    int CHANNEL_COUNT = 1;
+    /**
+     * PCM位深
+     */
+    int BIT_DEPTH = 16;
+    /**
+     * 去除首尾静音时保留的留白时长（单位：ms）
+     */
+    int SILENCE_PADDING_TIME = 300;
+    /**
+     * 录音文件头同步间隔（单位：ms）
+     */
+    int FILE_SYNC_INTERVAL = 1000;
+    /**
+     * 录音内存缓冲时长（单位：ms，16k单声道约160KB）
+     */
+    int MEMORY_BUFFER_TIME = 1000 * 5;
+
     /**
      * 获取最短录音时间
      *
@@ -35,4 +70,77 @@ public interface IRecordConfig {
      * @return 录音文件名
      */
     String getRecordFileName();
+
+    /**
+     * 获取编码格式
+     *
+     * @return {@link #CODEC_PCM} 或 {@link #CODEC_IMA_ADPCM}
+     */
+    default int getCodec() {
+        return CODEC_PCM;
+    }
+
+    /**
+     * 获取采样率
+     *
+     * @return 采样率（单位：Hz）
+     */
+    default int getSampleRate() {
+        return SAMPLE_RATE;
+    }
+
+    /**
+     * 获取声道数
+     *
+     * @return 声道数（1或2）
+     */
+    default int getChannelCount() {
+        return CHANNEL_COUNT;
+    }
+
+    /**
+     * 获取PCM位深（仅 {@link #CODEC_PCM} 有效，IMA ADPCM固定为4bit）
+     *
+     * @return 位深（8或16）
+     */
+    default int getBitDepth() {
+        return BIT_DEPTH;
+    }
+
+    /**
+     * 是否去除录音首尾的静音
+     *
+     * @return 是否去除首尾静音
+     */
+    default boolean isTrimSilence() {
+        return true;
+    }
+
+    /**
+     * 去除首尾静音时，在说话前后保留的留白时长
+     *
+     * @return 留白时长（单位：ms）
+     */
+    default long getSilencePaddingTime() {
+        return SILENCE_PADDING_TIME;
+    }
+
+    /**
+     * 录音过程中回填WAV文件头的间隔，进程意外退出时最多丢失这段时间的录音
+     *
+     * @return 同步间隔（单位：ms）
+     */
+    default long getFileSyncInterval() {
+        return FILE_SYNC_INTERVAL;
+    }
+
+    /**
+     * 录音数据先缓存在内存中的时长，超过这个时长或者录音确认保存时才写入文件，
+     * 取消或太短的录音不产生文件读写（返回0表示直接写文件）
+     *
+     * @return 内存缓冲时长（单位：ms）
+     */
+    default long getMemoryBufferTime() {
+        return MEMORY_BUFFER_TIME;
+    }
 }
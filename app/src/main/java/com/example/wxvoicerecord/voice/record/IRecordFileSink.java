@@ -0,0 +1,34 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.io.IOException;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 录音文件写入（按 {@link IRecordConfig#getCodec()} 选择具体实现）
+ */
+public interface IRecordFileSink extends IFrameSink {
+    /**
+     * 获取录音文件路径
+     *
+     * @return 文件路径
+     */
+    String getFilePath();
+
+    /**
+     * 根据已写入的数据计算时长（录音结束后调用）
+     *
+     * @return 时长（单位：ms）
+     */
+    long getDurationMs();
+
+    /**
+     * 丢弃指定位置之后已写入的数据（在 {@link #onStop()} 之前调用，用于去除结尾的静音）
+     * <p>
+     * 实现可以按编码块对齐，实际保留的数据可能略多于sampleCount
+     *
+     * @param sampleCount 保留的每声道采样数
+     * @throws IOException 截断失败
+     */
+    void truncate(long sampleCount) throws IOException;
+}
@@ -0,0 +1,64 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 音量电平信箱（无锁单槽）
+ * <p>
+ * 生产者（录音分发线程）每次投递都会覆盖旧值，消费者（界面刷新线程）每次取走最新值，
+ * 两边都不会阻塞，也不会因为消费慢而堆积消息
+ */
+public final class LevelMailbox {
+    /**
+     * 信箱为空
+     */
+    public static final long EMPTY = Long.MIN_VALUE;
+
+    private final AtomicLong mSlot = new AtomicLong(EMPTY);
+
+    /**
+     * 投递电平值，覆盖未被取走的旧值
+     *
+     * @param rmsDb  平滑后的RMS分贝值
+     * @param peakDb 平滑后的峰值分贝值
+     */
+    public void post(float rmsDb, float peakDb) {
+        long packed = ((long) Float.floatToRawIntBits(rmsDb) << 32)
+                | (Float.floatToRawIntBits(peakDb) & 0xFFFFFFFFL);
+        mSlot.lazySet(packed);
+    }
+
+    /**
+     * 取走最新的电平值
+     *
+     * @return 打包后的电平值，没有新值时返回 {@link #EMPTY}
+     */
+    public long poll() {
+        return mSlot.getAndSet(EMPTY);
+    }
+
+    /**
+     * 清空信箱
+     */
+    public void clear() {
+        mSlot.set(EMPTY);
+    }
+
+    /**
+     * @param packed {@link #poll()} 的返回值
+     * @return RMS分贝值
+     */
+    public static float rmsDb(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+    /**
+     * @param packed {@link #poll()} 的返回值
+     * @return 峰值分贝值
+     */
+    public static float peakDb(long packed) {
+        return Float.intBitsToFloat((int) packed);
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.wxvoicerecord.voice.record;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 音量电平计算
+ * <p>
+ * 在录音分发线程上逐个采样累计RMS和峰值，每凑够一个刷新周期（默认60Hz）的采样，
+ * 计算一次分贝值并做平滑处理，然后投递到 {@link LevelMailbox}，由界面按显示帧率取用
+ * <p>
+ * 分贝值为 20 * log10(振幅)，与 MediaRecorder.getMaxAmplitude() 换算的结果保持同一量级，
+ * 静音时为0而不是-Infinity
+ */
+public class LevelMeterSink implements IFrameSink {
+    /**
+     * 默认投递频率（单位：Hz）
+     */
+    public static final int DEFAULT_PUBLISH_RATE = 60;
+    /**
+     * 对数表精度（尾数位数）
+     */
+    private static final int LOG_TABLE_BITS = 8;
+    private static final int LOG_TABLE_MASK = (1 << LOG_TABLE_BITS) - 1;
+    /**
+     * log2(1 + i / 256) 查找表
+     */
+    private static final float[] LOG2_TABLE = new float[1 << LOG_TABLE_BITS];
+    /**
+     * 10 * log10(2)，功率的log2值换算成分贝
+     */
+    private static final float DB_PER_LOG2 = 3.0103f;
+    /**
+     * 电平上升时的平滑系数（快速跟随）
+     */
+    private static final float ATTACK = 0.6f;
+    /**
+     * 电平下降时的平滑系数（缓慢回落）
+     */
+    private static final float RELEASE = 0.15f;
+
+    static {
+        for (int i = 0; i < LOG2_TABLE.length; i++) {
+            LOG2_TABLE[i] = (float) (Math.log(1 + i / (double) LOG2_TABLE.length) / Math.log(2));
+        }
+    }
+
+    private final LevelMailbox mMailbox = new LevelMailbox();
+    private final int mPublishRate;
+    /**
+     * 每个刷新周期的采样数
+     */
+    private int mBlockSize;
+    private int mBlockCount;
+    private long mBlockSumSquares;
+    private int mBlockPeak;
+    private float mSmoothRmsDb;
+    private float mSmoothPeakDb;
+
+    public LevelMeterSink() {
+        this(DEFAULT_PUBLISH_RATE);
+    }
+
+    public LevelMeterSink(int publishRate) {
+        mPublishRate = publishRate;
+    }
+
+    /**
+     * @return 电平信箱（界面从中读取电平值）
+     */
+    public LevelMailbox getMailbox() {
+        return mMailbox;
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) {
+        mBlockSize = Math.max(1, sampleRate * channelCount / mPublishRate);
+        mBlockCount = 0;
+        mBlockSumSquares = 0;
+        mBlockPeak = 0;
+        mSmoothRmsDb = 0;
+        mSmoothPeakDb = 0;
+        mMailbox.clear();
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) {
+        for (int i = 0; i < length; i++) {
+            int sample = frame[i];
+            mBlockSumSquares += sample * sample;
+            if (sample < 0) {
+                sample = -sample;
+            }
+            if (sample > mBlockPeak) {
+                mBlockPeak = sample;
+            }
+            if (++mBlockCount == mBlockSize) {
+                publishBlock();
+            }
+        }
+    }
+
+    @Override
+    public void onStop() {
+        mMailbox.clear();
+    }
+
+    private void publishBlock() {
+        float rmsDb = powerToDb(mBlockSumSquares / mBlockCount);
+        float peakDb = powerToDb((long) mBlockPeak * mBlockPeak);
+        mSmoothRmsDb = smooth(mSmoothRmsDb, rmsDb);
+        mSmoothPeakDb = smooth(mSmoothPeakDb, peakDb);
+        mMailbox.post(mSmoothRmsDb, mSmoothPeakDb);
+        mBlockCount = 0;
+        mBlockSumSquares = 0;
+        mBlockPeak = 0;
+    }
+
+    private static float smooth(float current, float target) {
+        float coefficient = target > current ? ATTACK : RELEASE;
+        return current + (target - current) * coefficient;
+    }
+
+    /**
+     * 功率换算为分贝（10 * log10(power)），通过查表计算，不调用Math.log10
+     *
+     * @param power 功率（振幅的平方）
+     * @return 分贝值，power为0时返回0
+     */
+    static float powerToDb(long power) {
+        if (power <= 0) {
+            return 0;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(power);
+        int index;
+        if (exponent >= LOG_TABLE_BITS) {
+            index = (int) (power >>> (exponent - LOG_TABLE_BITS)) & LOG_TABLE_MASK;
+        } else {
+            index = (int) (power << (LOG_TABLE_BITS - exponent)) & LOG_TABLE_MASK;
+        }
+        return (exponent + LOG2_TABLE[index]) * DB_PER_LOG2;
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.wxvoicerecord.voice.record;
+
+import com.example.wxvoicerecord.voice.WaveformEnvelope;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 内存优先的录音写入（包装在最外层）
+ * <p>
+ * 录音开始后PCM先缓存在内存块池中，下游（去除静音、编码、写文件）都不启动；
+ * 录音时长超过缓冲时长或者录音被确认保存时，才启动下游并写入缓存的数据，之后直接透传。
+ * <p>
+ * 取消录音或录音太短时调用 {@link #discard()}，没有写入过文件时只归还内存块，不产生任何文件读写
+ */
+public class MemoryFirstSink implements IRecordFileSink {
+    private final IRecordFileSink mDownstream;
+    private final long mBufferTimeMs;
+    /**
+     * 缓存的内存块
+     */
+    private final ArrayList<short[]> mChunks = new ArrayList<>();
+    /**
+     * 已缓存的采样数（所有声道）
+     */
+    private int mBufferedCount;
+    /**
+     * 缓冲区上限（所有声道的采样数）
+     */
+    private long mBufferLimit;
+    /**
+     * 写入下游时的分帧缓冲区
+     */
+    private short[] mReplayFrame;
+    private int mSampleRate;
+    private int mChannelCount;
+    /**
+     * 是否已经写入下游
+     */
+    private volatile boolean isSpilled;
+    /**
+     * 是否丢弃本次录音
+     */
+    private volatile boolean isDiscarded;
+
+    /**
+     * @param downstream   文件写入
+     * @param bufferTimeMs 内存缓冲时长（单位：ms）
+     */
+    public MemoryFirstSink(IRecordFileSink downstream, long bufferTimeMs) {
+        mDownstream = downstream;
+        mBufferTimeMs = Math.max(0, bufferTimeMs);
+    }
+
+    @Override
+    public String getFilePath() {
+        return mDownstream.getFilePath();
+    }
+
+    @Override
+    public long getDurationMs() {
+        return isSpilled ? mDownstream.getDurationMs() : 0;
+    }
+
+    /**
+     * 是否已经写入文件
+     *
+     * @return 是否已经写入文件
+     */
+    public boolean isSpilled() {
+        return isSpilled;
+    }
+
+    /**
+     * 丢弃本次录音（在停止录音之前调用，任意线程）
+     * <p>
+     * 录音停止时归还内存块；如果已经写入了文件，在录音线程中删除文件
+     */
+    public void discard() {
+        isDiscarded = true;
+    }
+
+    @Override
+    public void truncate(long sampleCount) throws IOException {
+        if (isSpilled) {
+            mDownstream.truncate(sampleCount);
+        } else {
+            mBufferedCount = (int) Math.min(mBufferedCount, sampleCount * mChannelCount);
+        }
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) throws IOException {
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mBufferLimit = mBufferTimeMs * sampleRate / 1000 * channelCount;
+        mBufferedCount = 0;
+        isSpilled = false;
+        int frameSize = sampleRate * AudioCaptureEngine.FRAME_DURATION_MS / 1000 * channelCount;
+        if (mReplayFrame == null || mReplayFrame.length != frameSize) {
+            mReplayFrame = new short[frameSize];
+        }
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) throws IOException {
+        if (isSpilled) {
+            mDownstream.onFrame(frame, length);
+            return;
+        }
+        if (isDiscarded) {
+            return;
+        }
+        append(frame, length);
+        if (mBufferedCount >= mBufferLimit) {
+            //超过缓冲时长，开始写文件
+            spill();
+        }
+    }
+
+    @Override
+    public void onStop() throws IOException {
+        try {
+            if (isDiscarded) {
+                if (isSpilled) {
+                    mDownstream.onStop();
+                    new File(mDownstream.getFilePath()).delete();
+                    new File(WaveformEnvelope.getPath(mDownstream.getFilePath())).delete();
+                }
+                return;
+            }
+            if (!isSpilled) {
+                spill();
+            }
+            mDownstream.onStop();
+        } finally {
+            recycleChunks();
+        }
+    }
+
+    private void append(short[] frame, int length) {
+        int offset = 0;
+        while (offset < length) {
+            int chunkIndex = mBufferedCount / PcmChunkPool.CHUNK_SIZE;
+            int chunkOffset = mBufferedCount % PcmChunkPool.CHUNK_SIZE;
+            if (chunkIndex == mChunks.size()) {
+                mChunks.add(PcmChunkPool.obtain());
+            }
+            int count = Math.min(length - offset, PcmChunkPool.CHUNK_SIZE - chunkOffset);
+            System.arraycopy(frame, offset, mChunks.get(chunkIndex), chunkOffset, count);
+            offset += count;
+            mBufferedCount += count;
+        }
+    }
+
+    /**
+     * 启动下游，按帧写入缓存的数据
+     */
+    private void spill() throws IOException {
+        isSpilled = true;
+        mDownstream.onStart(mSampleRate, mChannelCount);
+        int position = 0;
+        while (position < mBufferedCount) {
+            int length = Math.min(mReplayFrame.length, mBufferedCount - position);
+            int copied = 0;
+            while (copied < length) {
+                int chunkOffset = (position + copied) % PcmChunkPool.CHUNK_SIZE;
+                short[] chunk = mChunks.get((position + copied) / PcmChunkPool.CHUNK_SIZE);
+                int count = Math.min(length - copied, PcmChunkPool.CHUNK_SIZE - chunkOffset);
+                System.arraycopy(chunk, chunkOffset, mReplayFrame, copied, count);
+                copied += count;
+            }
+            mDownstream.onFrame(mReplayFrame, length);
+            position += length;
+        }
+        recycleChunks();
+    }
+
+    private void recycleChunks() {
+        for (int i = 0; i < mChunks.size(); i++) {
+            PcmChunkPool.recycle(mChunks.get(i));
+        }
+        mChunks.clear();
+        mBufferedCount = 0;
+    }
+}
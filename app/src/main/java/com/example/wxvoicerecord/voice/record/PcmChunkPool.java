@@ -0,0 +1,52 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.util.ArrayDeque;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * PCM内存块池（进程内共享），录音内存缓冲使用，避免每次录音重新分配大数组
+ */
+final class PcmChunkPool {
+    /**
+     * 每个内存块的采样数（16k单声道约0.5s）
+     */
+    static final int CHUNK_SIZE = 8 * 1024;
+    /**
+     * 池中最多保留的内存块数
+     */
+    private static final int MAX_POOLED_CHUNKS = 32;
+
+    private static final ArrayDeque<short[]> sChunks = new ArrayDeque<>();
+
+    private PcmChunkPool() {
+    }
+
+    /**
+     * 取出一个内存块（池为空时新建）
+     *
+     * @return 长度为 {@link #CHUNK_SIZE} 的内存块
+     */
+    static short[] obtain() {
+        synchronized (sChunks) {
+            short[] chunk = sChunks.pollFirst();
+            if (chunk != null) {
+                return chunk;
+            }
+        }
+        return new short[CHUNK_SIZE];
+    }
+
+    /**
+     * 归还内存块
+     *
+     * @param chunk 内存块
+     */
+    static void recycle(short[] chunk) {
+        synchronized (sChunks) {
+            if (sChunks.size() < MAX_POOLED_CHUNKS) {
+                sChunks.addFirst(chunk);
+            }
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.wxvoicerecord.voice.record;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * PCM帧环形缓冲区（单生产者单消费者）
+ * <p>
+ * 所有帧在构造时一次性分配，录音线程写入、分发线程读取，过程中不再分配内存
+ */
+final class PcmRingBuffer {
+    /**
+     * 预分配的帧数组
+     */
+    private final short[][] mFrames;
+    /**
+     * 每一帧实际有效的采样数
+     */
+    private final int[] mLengths;
+    /**
+     * 下标掩码（容量为2的幂）
+     */
+    private final int mMask;
+    /**
+     * 已写入帧序号（仅生产者修改）
+     */
+    private volatile long mWriteSeq;
+    /**
+     * 已读取帧序号（仅消费者修改）
+     */
+    private volatile long mReadSeq;
+    /**
+     * 缓冲区满时丢弃的帧数
+     */
+    private volatile long mOverrunCount;
+
+    /**
+     * @param capacity  帧数量（会向上取整为2的幂）
+     * @param frameSize 每帧采样数
+     */
+    PcmRingBuffer(int capacity, int frameSize) {
+        int size = Integer.highestOneBit(Math.max(2, capacity) - 1) << 1;
+        mFrames = new short[size][frameSize];
+        mLengths = new int[size];
+        mMask = size - 1;
+    }
+
+    /**
+     * 清空缓冲区（仅在生产者和消费者都停止时调用）
+     */
+    void clear() {
+        mWriteSeq = 0;
+        mReadSeq = 0;
+        mOverrunCount = 0;
+    }
+
+    /**
+     * 获取下一个可写入的帧
+     *
+     * @return 可写入的帧，缓冲区已满时返回null
+     */
+    short[] acquireWrite() {
+        if (mWriteSeq - mReadSeq > mMask) {
+            return null;
+        }
+        return mFrames[(int) (mWriteSeq & mMask)];
+    }
+
+    /**
+     * 提交 {@link #acquireWrite()} 获取的帧
+     *
+     * @param length 有效采样数
+     */
+    void commitWrite(int length) {
+        mLengths[(int) (mWriteSeq & mMask)] = length;
+        mWriteSeq++;
+    }
+
+    /**
+     * 记录一次丢帧
+     */
+    void markOverrun() {
+        mOverrunCount++;
+    }
+
+    /**
+     * 获取下一个可读取的帧
+     *
+     * @return 可读取的帧，缓冲区为空时返回null
+     */
+    short[] peekRead() {
+        if (mReadSeq == mWriteSeq) {
+            return null;
+        }
+        return mFrames[(int) (mReadSeq & mMask)];
+    }
+
+    /**
+     * @return {@link #peekRead()} 返回帧的有效采样数
+     */
+    int peekLength() {
+        return mLengths[(int) (mReadSeq & mMask)];
+    }
+
+    /**
+     * 释放 {@link #peekRead()} 获取的帧，使其可以被再次写入
+     */
+    void releaseRead() {
+        mReadSeq++;
+    }
+
+    long getOverrunCount() {
+        return mOverrunCount;
+    }
+}
@@ -4,8 +4,7 @@ import android.animation.ValueAnimator;
 import android.annotation.SuppressLint;
 import android.app.Dialog;
 import android.content.Context;
-import android.media.MediaPlayer;
-import android.media.MediaRecorder;
+import android.os.Handler;
 import android.os.Looper;
 import android.os.Vibrator;
 import android.util.AttributeSet;
@@ -26,9 +25,13 @@ import com.example.wxvoicerecord.BuildConfig;
 import com.example.wxvoicerecord.R;
 import com.example.wxvoicerecord.dialog.RecordStatusDialog;
 import com.example.wxvoicerecord.utils.ViewUtils;
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.AudioTrackPlayer;
 import com.example.wxvoicerecord.voice.MediaManager;
+import com.example.wxvoicerecord.voice.VoiceIoExecutor;
+import com.example.wxvoicerecord.voice.WaveformEnvelope;
 
-import java.io.File;
+import java.util.concurrent.Callable;
 
 import androidx.appcompat.widget.AppCompatButton;
 
@@ -47,6 +50,10 @@ public class RecordButton extends AppCompatButton {
      * 取消状态
      */
     private final static int CANCEL = 2;
+    /**
+     * 录音计时间隔（单位：ms）
+     */
+    private final static int TICK_INTERVAL = 200;
     /**
      * 录音文件名
      */
@@ -75,9 +82,35 @@ public class RecordButton extends AppCompatButton {
      * 录音状态dialog
      */
     private RecordStatusDialog mRecordStatusDialog;
-    private volatile MediaRecorder mRecorder;
-    private boolean runningObtainDecibelThread = true;
-    private ObtainDecibelThread mThread;
+    /**
+     * 录音引擎
+     */
+    private volatile AudioCaptureEngine mCaptureEngine;
+    /**
+     * 音量电平（用于驱动录音面板动画）
+     */
+    private final LevelMeterSink mLevelMeter = new LevelMeterSink();
+    /**
+     * 当前录音的文件写入（录音结束后直接从中获取时长，不需要再读文件）
+     */
+    private IRecordFileSink mRecordFileSink;
+    /**
+     * 当前录音的内存缓冲（没有启用内存缓冲时为null）
+     */
+    private MemoryFirstSink mMemoryFirstSink;
+    /**
+     * 首帧延迟监听
+     */
+    private OnRecordLatencyListener mOnRecordLatencyListener;
+    /**
+     * 按下录音按钮的时间（MotionEvent.getEventTime()）
+     */
+    private long mTouchDownTime;
+    /**
+     * 当前录音的计时会话
+     */
+    private RecordScheduler.Session mTickSession;
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
 
     public RecordButton(Context context) {
         this(context, null);
@@ -101,6 +134,60 @@ public class RecordButton extends AppCompatButton {
         this.mRecordConfig = config;
     }
 
+    public void setOnRecordLatencyListener(OnRecordLatencyListener listener) {
+        mOnRecordLatencyListener = listener;
+    }
+
+    /**
+     * 预热录音（建议在聊天界面获得焦点时调用）
+     * <p>
+     * 提前创建录音引擎和缓冲区，按下按钮时直接开始采集，避免开头的语音被截掉
+     *
+     * @return 是否预热成功（没有录音权限时会失败，按下按钮时会再次尝试）
+     */
+    public boolean prepare() {
+        //录音配置中的采样格式变化后需要重新创建录音引擎
+        if (mCaptureEngine != null && !mCaptureEngine.isCapturing() && !mCaptureEngine.isStopping()
+                && (mCaptureEngine.getSampleRate() != mRecordConfig.getSampleRate()
+                || mCaptureEngine.getChannelCount() != mRecordConfig.getChannelCount())) {
+            mCaptureEngine.release();
+            mCaptureEngine = null;
+        }
+        if (mCaptureEngine == null) {
+            mCaptureEngine = new AudioCaptureEngine(mRecordConfig.getSampleRate(),
+                    mRecordConfig.getChannelCount());
+            mCaptureEngine.setOnFirstFrameListener(mOnFirstFrameListener);
+        }
+        return mCaptureEngine.prepare();
+    }
+
+    /**
+     * 释放预热的录音资源（建议在聊天界面失去焦点时调用），正在录音时会取消录音
+     */
+    public void release() {
+        if (isRecording()) {
+            cancelRecord();
+        }
+        if (mCaptureEngine != null) {
+            mCaptureEngine.release();
+        }
+    }
+
+    /**
+     * 是否正在录音
+     *
+     * @return 是否正在录音
+     */
+    public boolean isRecording() {
+        return mCaptureEngine != null && mCaptureEngine.isCapturing();
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        release();
+    }
+
     @SuppressLint({"ClickableViewAccessibility", "UseCompatLoadingForDrawables"})
     @Override
     public boolean onTouchEvent(MotionEvent event) {
@@ -109,6 +196,8 @@ public class RecordButton extends AppCompatButton {
             case MotionEvent.ACTION_DOWN:
                 //按下的时候，重新生成一个语音保存的地址，避免一直读写一个文件，可以引起错误
                 MediaManager.getInstance().reset();//停止其他音频播放
+                AudioTrackPlayer.getInstance().reset();
+                mTouchDownTime = event.getEventTime();
                 initDialogAndStartRecord();
                 break;
             case MotionEvent.ACTION_MOVE:
@@ -127,7 +216,7 @@ public class RecordButton extends AppCompatButton {
             case MotionEvent.ACTION_UP:
             case MotionEvent.ACTION_CANCEL:
                 //录音达到最大时长时，会自动结束录音并且消息dialog，此时需要判断，否则会判断为cancel将录音文件删除
-                if (mRecordStatusDialog == null) {
+                if (!isRecording()) {
                     break;
                 }
 
@@ -149,20 +238,62 @@ public class RecordButton extends AppCompatButton {
      * @return 触点是否在录音区域中
      */
     private boolean isLocationInRecordRect(MotionEvent event) {
+        //dialog还没有显示出来时，手指不可能移出录音区域
+        if (mRecordStatusDialog == null || !mRecordStatusDialog.isShowing()) {
+            return true;
+        }
         return ViewUtils.isEventAbsoluteLocationInView(getContext(),
                 mRecordStatusDialog.getBottomLayout(), event);
     }
 
     /**
-     * 初始化录音对话框 并开始录音
+     * 开始录音 并初始化录音对话框
+     * <p>
+     * 先开始录音，dialog在下一个消息中再创建显示，避免dialog的布局加载推迟开始录音的时间
      */
     private void initDialogAndStartRecord() {
-        mRecordStatusDialog = new RecordStatusDialog(getContext());
         if (startRecording()) {
-            mRecordStatusDialog.show();
+            post(mShowDialogRunnable);
         }
     }
 
+    /**
+     * 创建并显示录音对话框
+     */
+    private final Runnable mShowDialogRunnable = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRecording() || mRecordStatusDialog != null) {
+                return;
+            }
+            mRecordStatusDialog = new RecordStatusDialog(getContext());
+            mRecordStatusDialog.setLevelMailbox(mLevelMeter.getMailbox());
+            mRecordStatusDialog.show();
+        }
+    };
+
+    /**
+     * 首帧回调（录音线程），计算按下按钮到采集到首帧的延迟
+     */
+    private final AudioCaptureEngine.OnFirstFrameListener mOnFirstFrameListener =
+            new AudioCaptureEngine.OnFirstFrameListener() {
+                @Override
+                public void onFirstFrame(long uptimeMillis) {
+                    final long latency = uptimeMillis - mTouchDownTime;
+                    if (BuildConfig.DEBUG) {
+                        Log.d(TAG, "首帧延迟：" + latency + "ms");
+                    }
+                    post(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mOnRecordLatencyListener != null) {
+                                mOnRecordLatencyListener.onFirstFrameLatency(latency);
+                            }
+                        }
+                    });
+                }
+            };
+
     /**
      * 放开手指，结束录音处理
      */
@@ -176,35 +307,75 @@ public class RecordButton extends AppCompatButton {
             });
             return;
         }
+        //自动结束和松手可能同时触发，只处理一次
+        if (!isRecording()) {
+            return;
+        }
 
         long reocrdTime = System.currentTimeMillis() - mStartRecordTime;
 
         vibrateNotice = true;
         final String wavFileName = mRecordFileName;
-        File file = new File(wavFileName);
-        stopRecording();
-
-        if (!file.exists()) {
+        //按住时间太短，停止前丢弃内存中的数据，不写文件
+        if (reocrdTime < mRecordConfig.getShortestRecordTime()) {
+            discardRecord();
+            Toast.makeText(getContext(), R.string.talk_time_is_too_short, Toast.LENGTH_SHORT).show();
             return;
         }
+        final IRecordFileSink sink = mRecordFileSink;
+        stopRecording(new AudioCaptureEngine.OnStopListener() {
+            @Override
+            public void onStop(boolean hasSinkError) {
+                commitRecord(wavFileName, sink, hasSinkError);
+            }
+        });
+    }
 
-        if (reocrdTime < mRecordConfig.getShortestRecordTime()) {
-            Toast.makeText(getContext(), R.string.talk_time_is_too_short, Toast.LENGTH_SHORT).show();
-            file.delete();
+    /**
+     * 录音文件写入完成（主线程），计算时长
+     *
+     * @param wavFileName  录音文件名
+     * @param sink         录音文件写入
+     * @param hasSinkError 写入时是否出错
+     */
+    private void commitRecord(final String wavFileName, IRecordFileSink sink, boolean hasSinkError) {
+        if (sink != null && !hasSinkError) {
+            //写入的数据量就是精确时长（去除首尾静音后），不需要读文件
+            onRecordCommitted(wavFileName, sink.getDurationMs());
             return;
         }
+        //写入异常时才去解析文件头
+        VoiceIoExecutor.getInstance().submit(VoiceIoExecutor.PRIORITY_COMMIT, new Callable<Long>() {
+            @Override
+            public Long call() {
+                return AudioDurationProbe.getDurationMs(wavFileName);
+            }
+        }, new VoiceIoExecutor.Callback<Long>() {
+            @Override
+            public void onResult(Long durationMs) {
+                onRecordCommitted(wavFileName, durationMs == null ? AudioDurationProbe.UNKNOWN : durationMs);
+            }
+        });
+    }
 
-        MediaPlayer mediaPlayer = new MediaPlayer();
-        try {
-            mediaPlayer.setDataSource(wavFileName);
-            mediaPlayer.prepare();
-            mediaPlayer.getDuration();
-        } catch (Exception e) {
-            e.printStackTrace();
+    /**
+     * 录音保存完成（主线程）
+     *
+     * @param wavFileName 录音文件名
+     * @param durationMs  录音时长（单位：ms）
+     */
+    private void onRecordCommitted(String wavFileName, long durationMs) {
+        //全程没有检测到说话
+        if (durationMs <= 0) {
+            Toast.makeText(getContext(), R.string.talk_time_is_too_short, Toast.LENGTH_SHORT).show();
+            VoiceIoExecutor.getInstance().delete(wavFileName);
+            VoiceIoExecutor.getInstance().delete(WaveformEnvelope.getPath(wavFileName));
+            return;
         }
 
         if (mOnRecordListener != null) {
-            mOnRecordListener.onFinish(wavFileName, mediaPlayer.getDuration() / 1000);
+            //四舍五入到秒
+            mOnRecordListener.onFinish(wavFileName, Math.max(1, (int) ((durationMs + 500) / 1000)));
         }
     }
 
@@ -212,60 +383,113 @@ public class RecordButton extends AppCompatButton {
      * 放开手指，取消录音处理
      */
     public void cancelRecord() {
-        stopRecording();
-        File file = new File(mRecordFileName);
-        file.delete();
+        if (!isRecording()) {
+            return;
+        }
+        discardRecord();
         if (mOnRecordListener != null) {
             mOnRecordListener.onCancel();
         }
     }
 
+    /**
+     * 停止录音并丢弃录音数据
+     * <p>
+     * 启用内存缓冲时，还没有写入文件的录音只归还内存，已经写入的文件在录音线程中删除；
+     * 否则在文件写完后，在文件读写线程中删除
+     */
+    private void discardRecord() {
+        if (mMemoryFirstSink != null) {
+            mMemoryFirstSink.discard();
+            stopRecording(null);
+            return;
+        }
+        final String fileName = mRecordFileName;
+        stopRecording(new AudioCaptureEngine.OnStopListener() {
+            @Override
+            public void onStop(boolean hasSinkError) {
+                VoiceIoExecutor.getInstance().delete(fileName);
+                VoiceIoExecutor.getInstance().delete(WaveformEnvelope.getPath(fileName));
+            }
+        });
+    }
+
     /**
      * 执行录音操作
      */
     private boolean startRecording() {
-        if (mRecorder != null) {
-            mRecorder.reset();
-        } else {
-            mRecorder = new MediaRecorder();
+        //上一次录音的文件还没有写完时不能开始
+        if (!prepare() || mCaptureEngine.isStopping()) {
+            return false;
         }
         mStartRecordTime = System.currentTimeMillis();
+        vibrateNotice = true;
         mRecordFileName = mRecordConfig.getRecordFileName();
-        mRecorder.setAudioSource(MediaRecorder.AudioSource.MIC);
-        mRecorder.setOutputFormat(MediaRecorder.OutputFormat.DEFAULT);
-        mRecorder.setAudioEncoder(MediaRecorder.AudioEncoder.AMR_NB);
-        mRecorder.setOutputFile(mRecordFileName);
-        try {
-            mRecorder.prepare();
-            mRecorder.start();
-        } catch (Exception e) {
-            e.printStackTrace();
-            mRecorder.release();
-            mRecorder = null;
+        mCaptureEngine.clearSinks();
+        mRecordFileSink = createRecordFileSink(mRecordFileName);
+        mCaptureEngine.addSink(mRecordFileSink);
+        mCaptureEngine.addSink(mLevelMeter);
+        if (!mCaptureEngine.start()) {
             return false;
         }
-        runningObtainDecibelThread = true;
-        mThread = new ObtainDecibelThread();
-        mThread.start();
+        mTickSession = RecordScheduler.getInstance().schedule(mMainHandler, mRecordTick, TICK_INTERVAL);
         return true;
     }
 
-    private void stopRecording() {
-        runningObtainDecibelThread = false;
-        if (mThread != null) {
-            mThread = null;
+    /**
+     * 根据录音配置中的编码格式创建文件写入
+     *
+     * @param fileName 录音文件名
+     * @return 文件写入
+     */
+    private IRecordFileSink createRecordFileSink(String fileName) {
+        IRecordFileSink sink;
+        if (mRecordConfig.getCodec() == IRecordConfig.CODEC_IMA_ADPCM) {
+            sink = new AdpcmWavFileSink(fileName, mRecordConfig.getFileSyncInterval());
+        } else {
+            sink = new WavFileSink(fileName, mRecordConfig.getBitDepth(),
+                    mRecordConfig.getFileSyncInterval());
+        }
+        //统计写入文件的PCM的峰值，保存波形缩略图
+        sink = new WaveformSink(sink, mRecordConfig.getLongestRecordTime());
+        if (mRecordConfig.isTrimSilence()) {
+            //边录边去除首尾静音，结束时只截断文件
+            sink = new VadTrimSink(sink, mRecordConfig.getSilencePaddingTime());
+        }
+        mMemoryFirstSink = null;
+        if (mRecordConfig.getMemoryBufferTime() > 0) {
+            //先缓存在内存中，取消或太短的录音不写文件
+            mMemoryFirstSink = new MemoryFirstSink(sink, mRecordConfig.getMemoryBufferTime());
+            sink = mMemoryFirstSink;
+        }
+        return sink;
+    }
+
+    /**
+     * 停止录音，不等待文件写完
+     *
+     * @param listener 文件写完后在主线程回调，可以为null
+     */
+    private void stopRecording(final AudioCaptureEngine.OnStopListener listener) {
+        removeCallbacks(mShowDialogRunnable);
+        if (mTickSession != null) {
+            mTickSession.cancel();
+            mTickSession = null;
         }
 
-        if (mRecorder != null) {
-            try {
-                //停止时没有prepare，就会报stop failed
-                mRecorder.stop();
-                mRecorder.reset();
-                mRecorder.release();
-                mRecorder = null;
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+        if (mCaptureEngine != null) {
+            //剩余数据在分发线程中写入文件，写完后切回主线程
+            mCaptureEngine.stop(listener == null ? null : new AudioCaptureEngine.OnStopListener() {
+                @Override
+                public void onStop(final boolean hasSinkError) {
+                    mMainHandler.post(new Runnable() {
+                        @Override
+                        public void run() {
+                            listener.onStop(hasSinkError);
+                        }
+                    });
+                }
+            });
         }
         if (mRecordStatusDialog != null) {
             mRecordStatusDialog.dismiss();
@@ -275,57 +499,36 @@ public class RecordButton extends AppCompatButton {
     }
 
     /**
-     * 用来定时获取录音的声音大小，更新分贝值，以驱动动画
-     * 获取录音时间，提醒用户
-     * 到达最大时间以后自动停止
+     * 录音计时（主线程），提醒用户剩余时间，到达最大时间以后自动停止
+     * <p>
+     * 音量由 {@link LevelMeterSink} 在录音线程中计算，面板直接从电平信箱读取，不在这里轮询
      */
-    private class ObtainDecibelThread extends Thread {
-        @SuppressLint("MissingPermission")
+    private final Runnable mRecordTick = new Runnable() {
         @Override
         public void run() {
-            while (runningObtainDecibelThread) {
-                if (mRecorder == null) {
-                    break;
-                }
-                //声音振幅
-                int maxAmplitude = mRecorder.getMaxAmplitude();
-                //获取声音的db值
-                double db = 20 * Math.log10(maxAmplitude);
-
-                if (BuildConfig.DEBUG) {
-                    Log.d(TAG, "分贝值：" + db);
-                }
-
-                long now = System.currentTimeMillis();
-                long recordingTime = now - mStartRecordTime;
-                //录音超出最大时间
-                if (recordingTime > mRecordConfig.getLongestRecordTime()) {
-                    finishRecord();
-                    return;
-                }
-
-                //少于十秒则提醒
-                long lessTime = mRecordConfig.getLongestRecordTime() - recordingTime;
-                if (lessTime < mRecordConfig.getWhatLeftTimeToNotice()) {
-                    mRecordStatusDialog.updatePanelText(lessTime / 1000 + getResources().getString(R.string.will_be_finish_record_after_x_second));
-                    if (vibrateNotice) {
-                        vibrateNotice = false;
-                        Vibrator vibrator =
-                                (Vibrator) getContext().getSystemService(Context.VIBRATOR_SERVICE);
-                        vibrator.vibrate(500);
-                    }
-                } else {
-                    mRecordStatusDialog.updatePanelVoiceDb((int) db);
-                }
+            if (!isRecording()) {
+                return;
+            }
+            long recordingTime = System.currentTimeMillis() - mStartRecordTime;
+            //录音超出最大时间
+            if (recordingTime > mRecordConfig.getLongestRecordTime()) {
+                finishRecord();
+                return;
+            }
 
-                try {
-                    Thread.sleep(500);
-                } catch (InterruptedException e) {
-                    e.printStackTrace();
+            //少于十秒则提醒
+            long lessTime = mRecordConfig.getLongestRecordTime() - recordingTime;
+            if (lessTime < mRecordConfig.getWhatLeftTimeToNotice() && mRecordStatusDialog != null) {
+                mRecordStatusDialog.updatePanelText(lessTime / 1000 + getResources().getString(R.string.will_be_finish_record_after_x_second));
+                if (vibrateNotice) {
+                    vibrateNotice = false;
+                    Vibrator vibrator =
+                            (Vibrator) getContext().getSystemService(Context.VIBRATOR_SERVICE);
+                    vibrator.vibrate(500);
                 }
             }
         }
-    }
+    };
 
     /**
      * 录音监听
@@ -344,4 +547,16 @@ public class RecordButton extends AppCompatButton {
          */
         void onCancel();
     }
+
+    /**
+     * 录音首帧延迟监听
+     */
+    public interface OnRecordLatencyListener {
+        /**
+         * 采集到首帧数据（主线程回调）
+         *
+         * @param latencyMs 从按下按钮到采集到首帧的延迟（单位：ms）
+         */
+        void onFirstFrameLatency(long latencyMs);
+    }
 }
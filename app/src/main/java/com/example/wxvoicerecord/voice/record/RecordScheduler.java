@@ -0,0 +1,119 @@
+package com.example.wxvoicerecord.voice.record;
+
+import android.os.Handler;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 录音定时服务（进程内共享一个守护线程）
+ * <p>
+ * 每次录音创建一个 {@link Session}，定时任务由共享线程计时，投递到指定Handler的线程中执行。
+ * 在该线程中调用 {@link Session#cancel()} 之后，任务保证不会再执行，不会影响下一次录音
+ */
+public final class RecordScheduler {
+    private static volatile RecordScheduler sInstance;
+
+    private final ScheduledThreadPoolExecutor mExecutor;
+
+    private RecordScheduler() {
+        mExecutor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "RecordScheduler");
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        mExecutor.setRemoveOnCancelPolicy(true);
+    }
+
+    public static RecordScheduler getInstance() {
+        if (sInstance == null) {
+            synchronized (RecordScheduler.class) {
+                if (sInstance == null) {
+                    sInstance = new RecordScheduler();
+                }
+            }
+        }
+        return sInstance;
+    }
+
+    /**
+     * 按固定间隔执行任务
+     *
+     * @param handler  执行任务的线程
+     * @param task     任务
+     * @param periodMs 间隔（单位：ms）
+     * @return 定时会话，录音结束时取消
+     */
+    public Session schedule(Handler handler, Runnable task, long periodMs) {
+        Session session = new Session(handler, task);
+        session.mFuture = mExecutor.scheduleAtFixedRate(session.mPost, periodMs, periodMs,
+                TimeUnit.MILLISECONDS);
+        return session;
+    }
+
+    /**
+     * 一次录音的定时会话
+     */
+    public static final class Session {
+        private final Handler mHandler;
+        private final Runnable mTask;
+        private volatile ScheduledFuture<?> mFuture;
+        private volatile boolean isCancelled;
+        /**
+         * 是否已投递还未执行
+         */
+        private final AtomicBoolean isPending = new AtomicBoolean();
+        /**
+         * 在Handler线程中执行任务（取消后不再执行）
+         */
+        private final Runnable mRun = new Runnable() {
+            @Override
+            public void run() {
+                isPending.set(false);
+                if (!isCancelled) {
+                    mTask.run();
+                }
+            }
+        };
+        /**
+         * 定时线程中投递任务（上一次还没执行时不重复投递）
+         */
+        private final Runnable mPost = new Runnable() {
+            @Override
+            public void run() {
+                if (!isCancelled && isPending.compareAndSet(false, true)) {
+                    mHandler.post(mRun);
+                }
+            }
+        };
+
+        private Session(Handler handler, Runnable task) {
+            mHandler = handler;
+            mTask = task;
+        }
+
+        /**
+         * 取消定时任务（在Handler线程中调用时，返回后任务不会再执行）
+         */
+        public void cancel() {
+            isCancelled = true;
+            ScheduledFuture<?> future = mFuture;
+            if (future != null) {
+                future.cancel(false);
+            }
+            mHandler.removeCallbacks(mRun);
+        }
+
+        public boolean isCancelled() {
+            return isCancelled;
+        }
+    }
+}
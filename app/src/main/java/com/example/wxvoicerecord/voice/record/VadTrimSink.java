@@ -0,0 +1,160 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.io.IOException;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 去除录音首尾静音（包装在文件写入外层）
+ * <p>
+ * 开头：检测到说话之前，只在内存中保留最近一段数据（前置留白），不写入文件；
+ * 检测到说话后，先写入保留的数据再继续写入。
+ * <p>
+ * 结尾：说话开始后的数据全部写入文件，同时记录最后一个人声帧的位置，
+ * 录音结束时将文件截断到该位置加上后置留白，不需要再次读写整个文件
+ */
+public class VadTrimSink implements IRecordFileSink {
+    /**
+     * 连续多少个人声帧判定为开始说话
+     */
+    private static final int ATTACK_FRAMES = 2;
+    /**
+     * 人声检测的拖尾帧数（约300ms）
+     */
+    private static final int HANGOVER_FRAMES = 15;
+
+    private final IRecordFileSink mDownstream;
+    private final long mPaddingMs;
+    private final VoiceActivityDetector mDetector =
+            new VoiceActivityDetector(ATTACK_FRAMES, HANGOVER_FRAMES);
+    /**
+     * 开始说话前保留的帧
+     */
+    private short[][] mPreRollFrames = new short[0][];
+    private int[] mPreRollLengths = new int[0];
+    private int mPreRollStart;
+    private int mPreRollCount;
+    private int mChannelCount;
+    private int mSampleRate;
+    private boolean hasSpeech;
+    /**
+     * 已写入下游的每声道采样数
+     */
+    private long mWrittenSamples;
+    /**
+     * 最后一个人声帧结束时已写入下游的每声道采样数
+     */
+    private long mLastVoicedSamples;
+
+    /**
+     * @param downstream 文件写入
+     * @param paddingMs  首尾保留的留白时长（单位：ms）
+     */
+    public VadTrimSink(IRecordFileSink downstream, long paddingMs) {
+        mDownstream = downstream;
+        mPaddingMs = Math.max(0, paddingMs);
+    }
+
+    @Override
+    public String getFilePath() {
+        return mDownstream.getFilePath();
+    }
+
+    /**
+     * @return 去除首尾静音后的时长
+     */
+    @Override
+    public long getDurationMs() {
+        return mDownstream.getDurationMs();
+    }
+
+    @Override
+    public void truncate(long sampleCount) throws IOException {
+        mDownstream.truncate(sampleCount);
+        mWrittenSamples = Math.min(mWrittenSamples, sampleCount);
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) throws IOException {
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        int frameSize = sampleRate * AudioCaptureEngine.FRAME_DURATION_MS / 1000 * channelCount;
+        int frames = (int) (mPaddingMs / AudioCaptureEngine.FRAME_DURATION_MS) + ATTACK_FRAMES;
+        if (mPreRollFrames.length != frames
+                || (frames > 0 && mPreRollFrames[0].length != frameSize)) {
+            mPreRollFrames = new short[frames][frameSize];
+            mPreRollLengths = new int[frames];
+        }
+        mPreRollStart = 0;
+        mPreRollCount = 0;
+        hasSpeech = false;
+        mWrittenSamples = 0;
+        mLastVoicedSamples = 0;
+        mDetector.reset();
+        mDownstream.onStart(sampleRate, channelCount);
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) throws IOException {
+        boolean voiced = mDetector.process(frame, length);
+        if (!hasSpeech) {
+            if (!mDetector.isSpeaking()) {
+                keepPreRoll(frame, length);
+                return;
+            }
+            //开始说话，先写入保留的前置数据
+            hasSpeech = true;
+            flushPreRoll();
+        }
+        writeDownstream(frame, length);
+        if (voiced) {
+            mLastVoicedSamples = mWrittenSamples;
+        }
+    }
+
+    @Override
+    public void onStop() throws IOException {
+        if (hasSpeech) {
+            long paddingSamples = mPaddingMs * mSampleRate / 1000;
+            long keep = mLastVoicedSamples + paddingSamples;
+            if (keep < mWrittenSamples) {
+                mDownstream.truncate(keep);
+            }
+        }
+        mDownstream.onStop();
+    }
+
+    /**
+     * 开始说话前，在环形队列中保留最近的帧
+     */
+    private void keepPreRoll(short[] frame, int length) {
+        int capacity = mPreRollFrames.length;
+        if (capacity == 0 || length > mPreRollFrames[0].length) {
+            return;
+        }
+        int index;
+        if (mPreRollCount < capacity) {
+            index = (mPreRollStart + mPreRollCount) % capacity;
+            mPreRollCount++;
+        } else {
+            index = mPreRollStart;
+            mPreRollStart = (mPreRollStart + 1) % capacity;
+        }
+        System.arraycopy(frame, 0, mPreRollFrames[index], 0, length);
+        mPreRollLengths[index] = length;
+    }
+
+    private void flushPreRoll() throws IOException {
+        int capacity = mPreRollFrames.length;
+        for (int i = 0; i < mPreRollCount; i++) {
+            int index = (mPreRollStart + i) % capacity;
+            writeDownstream(mPreRollFrames[index], mPreRollLengths[index]);
+        }
+        mPreRollCount = 0;
+    }
+
+    private void writeDownstream(short[] frame, int length) throws IOException {
+        mDownstream.onFrame(frame, length);
+        mWrittenSamples += length / mChannelCount;
+    }
+}
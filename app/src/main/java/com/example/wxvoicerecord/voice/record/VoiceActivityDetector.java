@@ -0,0 +1,106 @@
+package com.example.wxvoicerecord.voice.record;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 基于能量的人声检测（逐帧处理）
+ * <p>
+ * 自适应跟踪背景噪声：帧能量低于噪声基线时快速下调，高于时缓慢上调。
+ * 帧能量超过噪声基线一定阈值即判定为人声帧；连续若干人声帧后进入说话状态，
+ * 连续若干非人声帧（拖尾）后才退出说话状态，避免字与字之间的停顿被判定为结束
+ */
+public class VoiceActivityDetector {
+    /**
+     * 人声帧需要高出噪声基线的分贝数
+     */
+    private static final float SPEECH_THRESHOLD_DB = 10f;
+    /**
+     * 人声帧的最低分贝值（20 * log10(rms)），过滤安静环境中噪声基线很低时的细小声音
+     */
+    private static final float MIN_SPEECH_DB = 35f;
+    /**
+     * 噪声基线下调系数（快速跟随）
+     */
+    private static final float FLOOR_FALL = 0.3f;
+    /**
+     * 噪声基线上调系数（缓慢跟随，说话时基本不受影响）
+     */
+    private static final float FLOOR_RISE = 0.005f;
+
+    private final int mAttackFrames;
+    private final int mHangoverFrames;
+    private float mNoiseFloorDb;
+    private boolean hasNoiseFloor;
+    private int mVoicedRun;
+    private int mSilentRun;
+    private boolean isSpeaking;
+
+    /**
+     * @param attackFrames   连续多少个人声帧后进入说话状态
+     * @param hangoverFrames 连续多少个非人声帧后退出说话状态
+     */
+    public VoiceActivityDetector(int attackFrames, int hangoverFrames) {
+        mAttackFrames = Math.max(1, attackFrames);
+        mHangoverFrames = Math.max(1, hangoverFrames);
+    }
+
+    public void reset() {
+        hasNoiseFloor = false;
+        mVoicedRun = 0;
+        mSilentRun = 0;
+        isSpeaking = false;
+    }
+
+    /**
+     * 处理一帧
+     *
+     * @param frame  PCM数据
+     * @param length 有效采样数
+     * @return 当前帧是否为人声帧
+     */
+    public boolean process(short[] frame, int length) {
+        if (length <= 0) {
+            return false;
+        }
+        long sumSquares = 0;
+        for (int i = 0; i < length; i++) {
+            sumSquares += frame[i] * frame[i];
+        }
+        float db = LevelMeterSink.powerToDb(sumSquares / length);
+        if (!hasNoiseFloor) {
+            hasNoiseFloor = true;
+            mNoiseFloorDb = db;
+        }
+        boolean voiced = db > MIN_SPEECH_DB && db > mNoiseFloorDb + SPEECH_THRESHOLD_DB;
+        mNoiseFloorDb += (db - mNoiseFloorDb) * (db < mNoiseFloorDb ? FLOOR_FALL : FLOOR_RISE);
+
+        if (voiced) {
+            mVoicedRun++;
+            mSilentRun = 0;
+            if (!isSpeaking && mVoicedRun >= mAttackFrames) {
+                isSpeaking = true;
+            }
+        } else {
+            mSilentRun++;
+            mVoicedRun = 0;
+            if (isSpeaking && mSilentRun >= mHangoverFrames) {
+                isSpeaking = false;
+            }
+        }
+        return voiced;
+    }
+
+    /**
+     * @return 是否处于说话状态
+     */
+    public boolean isSpeaking() {
+        return isSpeaking;
+    }
+
+    /**
+     * @return 当前噪声基线（分贝）
+     */
+    public float getNoiseFloorDb() {
+        return mNoiseFloorDb;
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.wxvoicerecord.voice.record;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 将PCM帧写入标准RIFF/WAV文件（支持8bit和16bit）
+ * <p>
+ * PCM通过复用的DirectByteBuffer追加写入FileChannel，每写入一个同步间隔的数据就回填一次
+ * RIFF和data块的长度。录音中途进程被杀时，文件最多丢失一个同步间隔的数据，
+ * 并且仍然是可以播放的WAV文件（剩余部分可由 {@link WavRecoveryScanner} 修复）
+ */
+public class WavFileSink implements IRecordFileSink {
+    /**
+     * WAV文件头长度
+     */
+    public static final int HEADER_SIZE = WavHeader.PCM_HEADER_SIZE;
+    /**
+     * 默认文件头同步间隔（单位：ms）
+     */
+    public static final long DEFAULT_SYNC_INTERVAL = 1000;
+
+    private final String mFilePath;
+    private final int mBitsPerSample;
+    private final long mSyncIntervalMs;
+    private RandomAccessFile mFile;
+    private FileChannel mChannel;
+    /**
+     * PCM转小端字节的复用缓冲区
+     */
+    private ByteBuffer mDataBuffer = ByteBuffer.allocateDirect(0);
+    /**
+     * 回填长度字段用的缓冲区
+     */
+    private final ByteBuffer mSizeBuffer = ByteBuffer.allocateDirect(4).order(ByteOrder.LITTLE_ENDIAN);
+    /**
+     * 已写入的PCM字节数
+     */
+    private volatile long mDataSize;
+    /**
+     * 上次回填文件头时的PCM字节数
+     */
+    private long mSyncedDataSize;
+    /**
+     * 同步间隔对应的字节数
+     */
+    private long mSyncIntervalBytes;
+    private int mSampleRate;
+    private int mChannelCount;
+
+    public WavFileSink(String filePath) {
+        this(filePath, 16, DEFAULT_SYNC_INTERVAL);
+    }
+
+    /**
+     * @param filePath       文件路径
+     * @param bitsPerSample  位深（8或16）
+     * @param syncIntervalMs 文件头同步间隔（单位：ms）
+     */
+    public WavFileSink(String filePath, int bitsPerSample, long syncIntervalMs) {
+        if (bitsPerSample != 8 && bitsPerSample != 16) {
+            throw new IllegalArgumentException("Unsupported bits per sample: " + bitsPerSample);
+        }
+        mFilePath = filePath;
+        mBitsPerSample = bitsPerSample;
+        mSyncIntervalMs = syncIntervalMs;
+    }
+
+    @Override
+    public String getFilePath() {
+        return mFilePath;
+    }
+
+    /**
+     * @return 已写入的PCM字节数
+     */
+    public long getDataSize() {
+        return mDataSize;
+    }
+
+    /**
+     * 根据已写入的PCM字节数计算时长
+     *
+     * @return 时长（单位：ms）
+     */
+    @Override
+    public long getDurationMs() {
+        long byteRate = (long) mSampleRate * mChannelCount * mBitsPerSample / 8;
+        return byteRate <= 0 ? 0 : mDataSize * 1000 / byteRate;
+    }
+
+    @Override
+    public void truncate(long sampleCount) throws IOException {
+        long dataSize = sampleCount * mChannelCount * mBitsPerSample / 8;
+        if (mChannel == null || dataSize >= mDataSize) {
+            return;
+        }
+        mChannel.truncate(HEADER_SIZE + dataSize);
+        mChannel.position(HEADER_SIZE + dataSize);
+        mDataSize = dataSize;
+        syncHeader();
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) throws IOException {
+        mSampleRate = sampleRate;
+        mChannelCount = channelCount;
+        mDataSize = 0;
+        mSyncedDataSize = 0;
+        mSyncIntervalBytes = Math.max(1, mSyncIntervalMs * sampleRate / 1000)
+                * channelCount * mBitsPerSample / 8;
+        //第一次录音时目录可能还不存在，在打开文件的线程中创建
+        File dir = new File(mFilePath).getParentFile();
+        if (dir != null) {
+            dir.mkdirs();
+        }
+        mFile = new RandomAccessFile(mFilePath, "rw");
+        mChannel = mFile.getChannel();
+        mChannel.truncate(0);
+        byte[] header = new byte[HEADER_SIZE];
+        WavHeader.writePcmHeader(header, sampleRate, channelCount, mBitsPerSample, 0);
+        writeFully(ByteBuffer.wrap(header));
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        int byteCount = length * mBitsPerSample / 8;
+        if (mDataBuffer.capacity() < byteCount) {
+            mDataBuffer = ByteBuffer.allocateDirect(byteCount).order(ByteOrder.LITTLE_ENDIAN);
+        }
+        mDataBuffer.clear();
+        if (mBitsPerSample == 16) {
+            for (int i = 0; i < length; i++) {
+                mDataBuffer.putShort(frame[i]);
+            }
+        } else {
+            //8bit WAV为无符号数
+            for (int i = 0; i < length; i++) {
+                mDataBuffer.put((byte) ((frame[i] >> 8) + 128));
+            }
+        }
+        mDataBuffer.flip();
+        writeFully(mDataBuffer);
+        mDataSize += byteCount;
+        if (mDataSize - mSyncedDataSize >= mSyncIntervalBytes) {
+            syncHeader();
+        }
+    }
+
+    @Override
+    public void onStop() throws IOException {
+        if (mChannel == null) {
+            return;
+        }
+        try {
+            syncHeader();
+        } finally {
+            mFile.close();
+            mFile = null;
+            mChannel = null;
+        }
+    }
+
+    /**
+     * 回填RIFF和data块的长度（不改变写入位置）
+     */
+    private void syncHeader() throws IOException {
+        writeSize(WavHeader.RIFF_SIZE_OFFSET, mDataSize + HEADER_SIZE - 8);
+        writeSize(WavHeader.PCM_DATA_SIZE_OFFSET, mDataSize);
+        mSyncedDataSize = mDataSize;
+    }
+
+    private void writeSize(long position, long value) throws IOException {
+        mSizeBuffer.clear();
+        mSizeBuffer.putInt((int) value);
+        mSizeBuffer.flip();
+        while (mSizeBuffer.hasRemaining()) {
+            position += mChannel.write(mSizeBuffer, position);
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+        }
+    }
+}
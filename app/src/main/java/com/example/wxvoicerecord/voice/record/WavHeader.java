@@ -0,0 +1,114 @@
+package com.example.wxvoicerecord.voice.record;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * WAV文件头生成（小端序）
+ */
+final class WavHeader {
+    /**
+     * PCM文件头长度
+     */
+    static final int PCM_HEADER_SIZE = 44;
+    /**
+     * IMA ADPCM文件头长度（fmt块20字节 + fact块）
+     */
+    static final int IMA_ADPCM_HEADER_SIZE = 60;
+    /**
+     * PCM文件头中data块长度字段的偏移
+     */
+    static final int PCM_DATA_SIZE_OFFSET = 40;
+    /**
+     * RIFF块长度字段的偏移
+     */
+    static final int RIFF_SIZE_OFFSET = 4;
+    /**
+     * IMA ADPCM文件头中fact块采样数字段的偏移
+     */
+    static final int IMA_ADPCM_FACT_OFFSET = 48;
+    /**
+     * IMA ADPCM文件头中data块长度字段的偏移
+     */
+    static final int IMA_ADPCM_DATA_SIZE_OFFSET = 56;
+
+    private WavHeader() {
+    }
+
+    /**
+     * 生成PCM WAV文件头
+     *
+     * @param header        输出缓冲区（长度至少为 {@link #PCM_HEADER_SIZE}）
+     * @param sampleRate    采样率
+     * @param channelCount  声道数
+     * @param bitsPerSample 位深（8或16）
+     * @param dataSize      PCM数据字节数
+     */
+    static void writePcmHeader(byte[] header, int sampleRate, int channelCount, int bitsPerSample,
+                               long dataSize) {
+        int blockAlign = channelCount * bitsPerSample / 8;
+        writeString(header, 0, "RIFF");
+        writeInt(header, RIFF_SIZE_OFFSET, (int) (dataSize + PCM_HEADER_SIZE - 8));
+        writeString(header, 8, "WAVE");
+        writeString(header, 12, "fmt ");
+        writeInt(header, 16, 16);
+        writeShort(header, 20, 0x0001);
+        writeShort(header, 22, channelCount);
+        writeInt(header, 24, sampleRate);
+        writeInt(header, 28, sampleRate * blockAlign);
+        writeShort(header, 32, blockAlign);
+        writeShort(header, 34, bitsPerSample);
+        writeString(header, 36, "data");
+        writeInt(header, PCM_DATA_SIZE_OFFSET, (int) dataSize);
+    }
+
+    /**
+     * 生成IMA ADPCM WAV文件头（包含fact块）
+     *
+     * @param header          输出缓冲区（长度至少为 {@link #IMA_ADPCM_HEADER_SIZE}）
+     * @param sampleRate      采样率
+     * @param channelCount    声道数
+     * @param blockAlign      每个块的字节数
+     * @param samplesPerBlock 每个块每声道的采样数
+     * @param sampleCount     每声道的总采样数
+     * @param dataSize        编码数据字节数
+     */
+    static void writeImaAdpcmHeader(byte[] header, int sampleRate, int channelCount, int blockAlign,
+                                    int samplesPerBlock, long sampleCount, long dataSize) {
+        writeString(header, 0, "RIFF");
+        writeInt(header, RIFF_SIZE_OFFSET, (int) (dataSize + IMA_ADPCM_HEADER_SIZE - 8));
+        writeString(header, 8, "WAVE");
+        writeString(header, 12, "fmt ");
+        writeInt(header, 16, 20);
+        writeShort(header, 20, 0x0011);
+        writeShort(header, 22, channelCount);
+        writeInt(header, 24, sampleRate);
+        writeInt(header, 28, (int) ((long) sampleRate * blockAlign / samplesPerBlock));
+        writeShort(header, 32, blockAlign);
+        writeShort(header, 34, 4);
+        writeShort(header, 36, 2);
+        writeShort(header, 38, samplesPerBlock);
+        writeString(header, 40, "fact");
+        writeInt(header, 44, 4);
+        writeInt(header, IMA_ADPCM_FACT_OFFSET, (int) sampleCount);
+        writeString(header, 52, "data");
+        writeInt(header, IMA_ADPCM_DATA_SIZE_OFFSET, (int) dataSize);
+    }
+
+    static void writeString(byte[] buffer, int offset, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            buffer[offset + i] = (byte) value.charAt(i);
+        }
+    }
+
+    static void writeInt(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+        buffer[offset + 2] = (byte) (value >> 16);
+        buffer[offset + 3] = (byte) (value >> 24);
+    }
+
+    static void writeShort(byte[] buffer, int offset, int value) {
+        buffer[offset] = (byte) value;
+        buffer[offset + 1] = (byte) (value >> 8);
+    }
+}
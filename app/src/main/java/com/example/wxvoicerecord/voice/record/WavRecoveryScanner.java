@@ -0,0 +1,199 @@
+package com.example.wxvoicerecord.voice.record;
+
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.codec.ImaAdpcm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 修复录音中途进程被杀后留下的WAV文件
+ * <p>
+ * 录音时文件头只按同步间隔回填，进程被杀时文件头中的长度可能小于实际写入的数据。
+ * 启动时扫描录音目录，以文件实际长度为准（按块对齐）回填RIFF、fact和data块的长度，
+ * 没有任何音频数据的文件直接删除。
+ * 扫描与录音同时进行，本次进程启动后开始录音或修改过的文件可能正在写入，跳过不处理
+ * <p>
+ * 涉及文件读写，不要在主线程调用
+ */
+public final class WavRecoveryScanner {
+    private static final String WAV_SUFFIX = ".wav";
+    /**
+     * 文件头正确，不需要修复
+     */
+    private static final long HEALTHY = -2;
+    /**
+     * 无法识别的文件
+     */
+    private static final long UNKNOWN = -1;
+
+    private WavRecoveryScanner() {
+    }
+
+    /**
+     * 扫描目录并修复其中的WAV文件
+     *
+     * @param dirPath   录音目录
+     * @param startTime 进程启动的时间（单位：ms），之后开始录音或修改过的文件不处理
+     * @return 修复（或删除）的文件数
+     */
+    public static int recover(String dirPath, long startTime) {
+        File[] files = new File(dirPath).listFiles();
+        if (files == null) {
+            return 0;
+        }
+        int count = 0;
+        for (File file : files) {
+            if (file.isFile() && file.getName().endsWith(WAV_SUFFIX) && !isWrittenSince(file, startTime)
+                    && recoverFile(file)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 是否为本次进程中录音的文件（按文件名中开始录音的时间和修改时间判断）
+     */
+    private static boolean isWrittenSince(File file, long startTime) {
+        return DefaultRecordConfig.parseRecordId(file.getName()) >= startTime || file.lastModified() >= startTime;
+    }
+
+    /**
+     * 修复单个WAV文件
+     *
+     * @param file 文件
+     * @return 是否修改了文件（文件头正确时返回false）
+     */
+    public static boolean recoverFile(File file) {
+        long dataSize;
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            if (raf.length() < 12) {
+                dataSize = 0;
+            } else {
+                byte[] buffer = new byte[16];
+                raf.readFully(buffer, 0, 12);
+                if (!matches(buffer, 0, "RIFF") || !matches(buffer, 8, "WAVE")) {
+                    return false;
+                }
+                dataSize = repair(raf, buffer);
+                if (dataSize == HEALTHY || dataSize == UNKNOWN) {
+                    return false;
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+            return false;
+        }
+        return dataSize > 0 || file.delete();
+    }
+
+    /**
+     * 遍历各个块，找到data块后按实际长度回填文件头
+     *
+     * @return 修复后的data块长度；文件头正确时返回 {@link #HEALTHY}；无法识别时返回 {@link #UNKNOWN}
+     */
+    private static long repair(RandomAccessFile raf, byte[] buffer) throws IOException {
+        int format = 0;
+        int channels = 0;
+        int blockAlign = 0;
+        long factPosition = -1;
+        long fileLength = raf.length();
+        long position = 12;
+        while (position + 8 <= fileLength) {
+            raf.seek(position);
+            raf.readFully(buffer, 0, 8);
+            long chunkSize = readInt(buffer, 4) & 0xFFFFFFFFL;
+            long bodyStart = position + 8;
+            if (matches(buffer, 0, "fmt ")) {
+                raf.readFully(buffer, 0, 16);
+                format = readShort(buffer, 0);
+                channels = readShort(buffer, 2);
+                blockAlign = readShort(buffer, 12);
+            } else if (matches(buffer, 0, "fact")) {
+                factPosition = bodyStart;
+            } else if (matches(buffer, 0, "data")) {
+                if (channels <= 0 || blockAlign <= 0) {
+                    return UNKNOWN;
+                }
+                long available = fileLength - bodyStart;
+                long dataSize;
+                long sampleCount = -1;
+                if (format == AudioDurationProbe.WAVE_FORMAT_IMA_ADPCM) {
+                    //最后一个不完整的块按8个采样一组对齐，不满一个块头的数据无法解码，直接丢弃
+                    int samplesPerBlock = ImaAdpcm.samplesPerBlock(blockAlign, channels);
+                    long headerSize = (long) ImaAdpcm.BLOCK_HEADER_SIZE * channels;
+                    long groupSize = 4L * channels;
+                    long remain = available % blockAlign;
+                    sampleCount = available / blockAlign * samplesPerBlock;
+                    if (remain >= headerSize) {
+                        remain = headerSize + (remain - headerSize) / groupSize * groupSize;
+                        sampleCount += (remain - headerSize) * 2 / channels + 1;
+                    } else {
+                        remain = 0;
+                    }
+                    dataSize = available / blockAlign * blockAlign + remain;
+                } else if (format == AudioDurationProbe.WAVE_FORMAT_PCM) {
+                    dataSize = available / blockAlign * blockAlign;
+                } else {
+                    return UNKNOWN;
+                }
+                if (dataSize == 0) {
+                    return 0;
+                }
+                if (dataSize == chunkSize && dataSize == available
+                        && (readIntAt(raf, buffer, 4) & 0xFFFFFFFFL) == fileLength - 8) {
+                    return HEALTHY;
+                }
+                if (dataSize < available) {
+                    raf.setLength(bodyStart + dataSize);
+                }
+                writeIntAt(raf, buffer, 4, bodyStart + dataSize - 8);
+                writeIntAt(raf, buffer, position + 4, dataSize);
+                if (factPosition >= 0 && sampleCount >= 0) {
+                    writeIntAt(raf, buffer, factPosition, sampleCount);
+                }
+                return dataSize;
+            }
+            //块长度为奇数时有一个填充字节
+            position = bodyStart + chunkSize + (chunkSize & 1);
+        }
+        return UNKNOWN;
+    }
+
+    private static int readIntAt(RandomAccessFile raf, byte[] buffer, long position) throws IOException {
+        raf.seek(position);
+        raf.readFully(buffer, 0, 4);
+        return readInt(buffer, 0);
+    }
+
+    private static void writeIntAt(RandomAccessFile raf, byte[] buffer, long position, long value)
+            throws IOException {
+        WavHeader.writeInt(buffer, 0, (int) value);
+        raf.seek(position);
+        raf.write(buffer, 0, 4);
+    }
+
+    private static boolean matches(byte[] buffer, int offset, String tag) {
+        for (int i = 0; i < tag.length(); i++) {
+            if (buffer[offset + i] != tag.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int readInt(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF)
+                | (buffer[offset + 1] & 0xFF) << 8
+                | (buffer[offset + 2] & 0xFF) << 16
+                | (buffer[offset + 3] & 0xFF) << 24;
+    }
+
+    private static int readShort(byte[] buffer, int offset) {
+        return (buffer[offset] & 0xFF) | (buffer[offset + 1] & 0xFF) << 8;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.wxvoicerecord.voice.record;
+
+import com.example.wxvoicerecord.voice.WaveformEnvelope;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Created by Horrarndoo on 2026/10/18.
+ * <p>
+ * 录音时统计波形包络（包装在文件写入外层，去除静音的内层，包络与最终文件的内容一致）
+ * <p>
+ * 直接使用写入文件的PCM帧按20ms窗口统计峰值，不需要再次解码，录音结束时保存 {@link WaveformEnvelope}
+ */
+public class WaveformSink implements IRecordFileSink {
+    /**
+     * 每秒的窗口数
+     */
+    private static final int WINDOW_RATE = 50;
+
+    private final IRecordFileSink mDownstream;
+    private final long mMaxDurationMs;
+    /**
+     * 每个窗口的峰值（0-255）
+     */
+    private byte[] mPeaks = new byte[0];
+    private int mWindowCount;
+    /**
+     * 每个窗口的每声道采样数
+     */
+    private int mWindowSize;
+    private int mWindowFrames;
+    private int mWindowPeak;
+    private int mChannelCount;
+
+    /**
+     * @param downstream    文件写入
+     * @param maxDurationMs 最长录音时长（单位：ms），用于预先分配峰值缓冲区
+     */
+    public WaveformSink(IRecordFileSink downstream, long maxDurationMs) {
+        mDownstream = downstream;
+        mMaxDurationMs = maxDurationMs;
+    }
+
+    @Override
+    public String getFilePath() {
+        return mDownstream.getFilePath();
+    }
+
+    @Override
+    public long getDurationMs() {
+        return mDownstream.getDurationMs();
+    }
+
+    @Override
+    public void truncate(long sampleCount) throws IOException {
+        mDownstream.truncate(sampleCount);
+        if (mWindowSize == 0) {
+            return;
+        }
+        long windows = (sampleCount + mWindowSize - 1) / mWindowSize;
+        if (windows <= mWindowCount) {
+            mWindowCount = (int) windows;
+            mWindowFrames = 0;
+            mWindowPeak = 0;
+        }
+    }
+
+    @Override
+    public void onStart(int sampleRate, int channelCount) throws IOException {
+        mDownstream.onStart(sampleRate, channelCount);
+        mChannelCount = channelCount;
+        mWindowSize = Math.max(1, sampleRate / WINDOW_RATE);
+        int capacity = (int) (mMaxDurationMs * WINDOW_RATE / 1000) + 1;
+        if (mPeaks.length < capacity) {
+            mPeaks = new byte[capacity];
+        }
+        mWindowCount = 0;
+        mWindowFrames = 0;
+        mWindowPeak = 0;
+    }
+
+    @Override
+    public void onFrame(short[] frame, int length) throws IOException {
+        mDownstream.onFrame(frame, length);
+        int channelCount = mChannelCount;
+        for (int i = 0; i + channelCount <= length; i += channelCount) {
+            for (int channel = 0; channel < channelCount; channel++) {
+                int sample = frame[i + channel];
+                if (sample < 0) {
+                    sample = -sample;
+                }
+                if (sample > mWindowPeak) {
+                    mWindowPeak = sample;
+                }
+            }
+            if (++mWindowFrames == mWindowSize) {
+                pushWindow();
+            }
+        }
+    }
+
+    @Override
+    public void onStop() throws IOException {
+        if (mWindowFrames > 0) {
+            pushWindow();
+        }
+        mDownstream.onStop();
+        try {
+            WaveformEnvelope.write(getFilePath(), WaveformEnvelope.downsample(mPeaks, mWindowCount));
+        } catch (IOException e) {
+            //包络只用于显示，保存失败不影响录音
+            e.printStackTrace();
+        }
+    }
+
+    private void pushWindow() {
+        if (mWindowCount == mPeaks.length) {
+            //超过预计的最长时长
+            mPeaks = Arrays.copyOf(mPeaks, Math.max(16, mPeaks.length * 2));
+        }
+        mPeaks[mWindowCount++] = (byte) Math.min(255, mWindowPeak >> 7);
+        mWindowFrames = 0;
+        mWindowPeak = 0;
+    }
+}
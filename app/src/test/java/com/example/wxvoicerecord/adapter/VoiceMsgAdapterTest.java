@@ -0,0 +1,101 @@
+package com.example.wxvoicerecord.adapter;
+
+import android.app.Application;
+import android.content.Context;
+import android.widget.FrameLayout;
+
+import com.example.wxvoicerecord.R;
+import com.example.wxvoicerecord.bean.VoiceMsg;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * 消息列表绑定测试
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 28, application = Application.class)
+public class VoiceMsgAdapterTest {
+    private static final int ITEM_COUNT = 20;
+    private static final int REBIND_ROUNDS = 200;
+    private static final long BASE_TIME = 1_600_000_000_000L;
+
+    private VoiceMsgAdapter mAdapter;
+    private final List<VoiceMsgAdapter.BaseViewHolder> mHolders = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = RuntimeEnvironment.getApplication();
+        FrameLayout parent = new FrameLayout(context);
+        List<VoiceMsg> list = new ArrayList<>();
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            list.add(new VoiceMsg(i, "/record/voice_" + i + ".wav", i * 4, BASE_TIME + i * 61_000L));
+        }
+        mAdapter = new VoiceMsgAdapter();
+        mAdapter.submitList(list);
+        //每条消息一个ViewHolder，相当于屏幕上可见的条目
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            VoiceMsgAdapter.BaseViewHolder holder = mAdapter.onCreateViewHolder(parent, 0);
+            mAdapter.onBindViewHolder(holder, i);
+            mHolders.add(holder);
+        }
+    }
+
+    @Test
+    public void bind_setsDurationTimeAndBubbleWidth() {
+        assertEquals(ITEM_COUNT, mAdapter.getItemCount());
+        assertEquals(5, mAdapter.getItemId(5));
+        assertEquals("20''", mHolders.get(5).tvDuration.getText().toString());
+        assertEquals("0''", mHolders.get(0).tvDuration.getText().toString());
+
+        int minWidth = (int) RuntimeEnvironment.getApplication().getResources().getDimension(R.dimen.dp_100);
+        assertEquals(minWidth, mHolders.get(0).layoutContent.getLayoutParams().width);
+        assertNotEquals(mHolders.get(1).layoutContent.getLayoutParams().width,
+                mHolders.get(2).layoutContent.getLayoutParams().width);
+        //时长超过60s后气泡不再变长
+        assertEquals(mHolders.get(15).layoutContent.getLayoutParams().width,
+                mHolders.get(ITEM_COUNT - 1).layoutContent.getLayoutParams().width);
+
+        //同一分钟的消息共用缓存的时间文字
+        CharSequence time = mHolders.get(3).tvTime.getText();
+        mAdapter.onBindViewHolder(mHolders.get(3), 3);
+        assertEquals(time, mHolders.get(3).tvTime.getText());
+    }
+
+    @Test
+    public void rebind_steadyState_allocatesNothing() {
+        java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+        assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadBean;
+        assumeTrue(bean.isThreadAllocatedMemorySupported() && bean.isThreadAllocatedMemoryEnabled());
+        long threadId = Thread.currentThread().getId();
+
+        //预热，缓存时间和时长文字
+        rebindAll();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int round = 0; round < REBIND_ROUNDS; round++) {
+            rebindAll();
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        long binds = (long) REBIND_ROUNDS * ITEM_COUNT;
+        assertEquals("allocated " + allocated + " bytes in " + binds + " binds", 0, allocated / binds);
+    }
+
+    private void rebindAll() {
+        for (int i = 0; i < ITEM_COUNT; i++) {
+            mAdapter.onBindViewHolder(mHolders.get(i), i);
+        }
+    }
+}
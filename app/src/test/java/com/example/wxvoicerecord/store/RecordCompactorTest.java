@@ -0,0 +1,113 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.AudioDurationProbe;
+import com.example.wxvoicerecord.voice.WavTranscoder;
+import com.example.wxvoicerecord.voice.record.AdpcmWavFileSink;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+import com.example.wxvoicerecord.voice.record.IRecordFileSink;
+import com.example.wxvoicerecord.voice.record.WavFileSink;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 录音文件压缩测试
+ */
+public class RecordCompactorTest {
+    private static final long BASE_ID = 1_600_000_000_000L;
+    private static final long DAY = 24 * 60 * 60 * 1000;
+    private static final int SAMPLE_RATE = 8000;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mDir;
+    private VoiceMsgStore mStore;
+    private RecordCompactor mCompactor;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = mFolder.getRoot().getPath();
+        mStore = new VoiceMsgStore(mDir);
+        mStore.open();
+        for (int i = 0; i < 3; i++) {
+            record(BASE_ID + i, new WavFileSink(path(BASE_ID + i)));
+        }
+        //已经是ADPCM的录音
+        record(BASE_ID + 3, new AdpcmWavFileSink(path(BASE_ID + 3)));
+        //最近的录音
+        long now = System.currentTimeMillis();
+        record(now, new WavFileSink(path(now)));
+        mCompactor = new RecordCompactor(mStore);
+        mCompactor.setMinAge(DAY);
+    }
+
+    @Test
+    public void compact_replacesOldPcmAndUpdatesSizes() {
+        long before = mStore.getTotalBytes();
+        assertEquals(4, mCompactor.selectBatch());
+        mCompactor.transcodeBatch();
+        assertEquals(3, mCompactor.replaceBatch());
+        assertEquals(0, mCompactor.selectBatch());
+
+        long after = 0;
+        for (int position = 0; position < mStore.getCount(); position++) {
+            File file = new File(path(mStore.getId(position)));
+            assertEquals(file.length(), mStore.getFileSize(position));
+            assertFalse(new File(WavTranscoder.getTempPath(file.getPath())).exists());
+            after += file.length();
+        }
+        assertEquals(after, mStore.getTotalBytes());
+        assertEquals(before - after, mCompactor.getSavedBytes());
+        assertEquals(3, mCompactor.getCompactedCount());
+        //时长不变（最多多出一个编码块）
+        long durationMs = AudioDurationProbe.getDurationMs(path(BASE_ID));
+        assertTrue(durationMs >= 1000 && durationMs < 1100);
+        assertTrue(mStore.getFileSize(0) < (SAMPLE_RATE * 2) / 3);
+        assertEquals(VoiceMsgStore.FLAG_COMPACTED, mStore.getFlags(3));
+        assertEquals(0, mStore.getFlags(4));
+
+        //文件大小保存在日志中
+        new File(mDir, VoiceMsgStore.INDEX_FILE_NAME).delete();
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        reopened.open();
+        assertEquals(after, reopened.getTotalBytes());
+    }
+
+    @Test
+    public void compact_doesNotRestoreExpiredRecord() {
+        assertEquals(4, mCompactor.selectBatch());
+        mCompactor.transcodeBatch();
+        //转码期间被清理
+        mStore.markExpired(1);
+        new File(path(BASE_ID + 1)).delete();
+        assertEquals(2, mCompactor.replaceBatch());
+        assertFalse(new File(path(BASE_ID + 1)).exists());
+        assertFalse(new File(WavTranscoder.getTempPath(path(BASE_ID + 1))).exists());
+    }
+
+    private void record(long id, IRecordFileSink sink) throws IOException {
+        short[] frame = new short[SAMPLE_RATE];
+        for (int i = 0; i < frame.length; i++) {
+            frame[i] = (short) (Math.sin(i * 2 * Math.PI * 440 / SAMPLE_RATE) * 8000);
+        }
+        sink.onStart(SAMPLE_RATE, 1);
+        sink.onFrame(frame, frame.length);
+        sink.onStop();
+        mStore.append(new VoiceMsg(id, path(id), 1, id));
+    }
+
+    private String path(long id) {
+        return DefaultRecordConfig.getRecordFilePath(mDir, id);
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 录音文件清理测试
+ */
+public class RetentionManagerTest {
+    private static final long BASE_ID = 1_600_000_000_000L;
+    private static final int FILE_SIZE = 1000;
+    private static final int COUNT = 10;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mDir;
+    private VoiceMsgStore mStore;
+    private RetentionManager mManager;
+
+    @Before
+    public void setUp() throws IOException {
+        mDir = mFolder.getRoot().getPath();
+        mStore = new VoiceMsgStore(mDir);
+        mStore.open();
+        for (int i = 0; i < COUNT; i++) {
+            long id = BASE_ID + i;
+            String path = DefaultRecordConfig.getRecordFilePath(mDir, id);
+            try (RandomAccessFile file = new RandomAccessFile(path, "rw")) {
+                file.setLength(FILE_SIZE);
+            }
+            mStore.append(new VoiceMsg(id, path, 1, id));
+        }
+        mManager = new RetentionManager(mStore);
+        mManager.setQuota(0, 0, 0);
+    }
+
+    @Test
+    public void totalBytes_isKeptWithoutScanning() {
+        assertEquals(COUNT * FILE_SIZE, mStore.getTotalBytes());
+        mStore.flush();
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        reopened.open();
+        assertEquals(COUNT * FILE_SIZE, reopened.getTotalBytes());
+    }
+
+    @Test
+    public void maxCount_expiresOldestAndKeepsRecords() {
+        mManager.setQuota(0, 0, 7);
+        assertArrayEquals(new long[]{BASE_ID, BASE_ID + 1, BASE_ID + 2}, mManager.expireBatch());
+        assertEquals(0, mManager.expireBatch().length);
+        assertFalse(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID)).exists());
+        assertTrue(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + 3)).exists());
+        assertEquals(7 * FILE_SIZE, mStore.getTotalBytes());
+
+        //消息仍然在列表中，显示为已过期
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        assertEquals(COUNT, reopened.open());
+        VoiceMsgTable page = new VoiceMsgTable(mDir, 4);
+        reopened.load(0, 4, page);
+        assertTrue(page.get(2).isExpired());
+        assertFalse(page.get(3).isExpired());
+    }
+
+    @Test
+    public void reclaim_deletesFilesLeftByInterruptedExpire() {
+        //标记过期并同步后、删除文件前退出
+        mStore.markExpired(0);
+        mStore.markExpired(2);
+        mStore.flush();
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        RetentionManager manager = new RetentionManager(reopened);
+        assertFalse(manager.reclaimBatch());
+        assertFalse(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID)).exists());
+        assertTrue(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + 1)).exists());
+        assertFalse(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + 2)).exists());
+        assertEquals((COUNT - 2) * FILE_SIZE, reopened.getTotalBytes());
+    }
+
+    @Test
+    public void maxBytes_expiresLeastRecentlyPlayed() {
+        //最早的两条刚播放过
+        mStore.markPlayed(BASE_ID, System.currentTimeMillis());
+        mStore.markPlayed(BASE_ID + 1, System.currentTimeMillis());
+        mManager.setQuota(COUNT * FILE_SIZE - 2 * FILE_SIZE, 0, 0);
+        assertArrayEquals(new long[]{BASE_ID + 2, BASE_ID + 3}, mManager.expireBatch());
+        assertEquals(0, mManager.expireBatch().length);
+        assertEquals(VoiceMsgStore.FLAG_PLAYED, mStore.getFlags(0));
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.wxvoicerecord.store;
+
+import com.example.wxvoicerecord.bean.VoiceMsg;
+import com.example.wxvoicerecord.voice.record.DefaultRecordConfig;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Calendar;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 消息记录存储测试
+ */
+public class VoiceMsgStoreTest {
+    private static final long BASE_ID = 1_600_000_000_000L;
+
+    @Rule
+    public TemporaryFolder mFolder = new TemporaryFolder();
+
+    private String mDir;
+
+    @Before
+    public void setUp() {
+        mDir = mFolder.getRoot().getPath();
+    }
+
+    @Test
+    public void reopen_loadsAppendedMessagesInIdOrder() {
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        assertEquals(0, store.open());
+        for (int i = 0; i < 40; i++) {
+            store.append(msg(i, i % 60 + 1));
+        }
+        //晚于后面消息保存的早期录音，按id插入
+        store.append(msg(-1, 7));
+        store.append(msg(5, 99));
+        store.flush();
+
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        assertEquals(41, reopened.open());
+        VoiceMsgTable page = new VoiceMsgTable(mDir, 3);
+        reopened.load(0, 3, page);
+        assertEquals(BASE_ID - 1, page.getId(0));
+        assertEquals(7000, page.getDurationMs(0));
+        assertEquals(BASE_ID + 1, page.getTime(2));
+        //表中一行的视图
+        VoiceMsg msg = page.get(1);
+        assertEquals(BASE_ID, msg.getId());
+        assertEquals(1, msg.getDuration());
+        assertEquals(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID), msg.getPath());
+        assertSame(msg, page.get(1));
+        msg.setPlayed(true);
+        assertEquals(VoiceMsgStore.FLAG_PLAYED, page.getFlags(1));
+        msg.setPath(mDir + "/other.wav");
+        assertEquals(mDir + "/other.wav", page.getPath(1));
+        assertEquals(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + 1), page.get(2).getPath());
+        assertEquals(2, page.indexOfId(BASE_ID + 1));
+        //id已存在的追加被忽略
+        page = new VoiceMsgTable(mDir, 1);
+        reopened.load(6, 1, page);
+        assertEquals(5, page.getId(0) - BASE_ID);
+        assertEquals(6, page.get(0).getDuration());
+        assertEquals(40, reopened.indexOf(BASE_ID + 39));
+    }
+
+    @Test
+    public void open_dropsTornLastRecord() throws IOException {
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        store.open();
+        for (int i = 0; i < 3; i++) {
+            store.append(msg(i, 1));
+        }
+        store.flush();
+        //第四条只写了一半，另有一条完整长度但内容没有写入的记录
+        store.append(msg(3, 1));
+        File log = new File(mDir, VoiceMsgStore.LOG_FILE_NAME);
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            long end = VoiceMsgStore.LOG_HEADER_SIZE + 3 * VoiceMsgStore.RECORD_SIZE;
+            file.setLength(end + VoiceMsgStore.RECORD_SIZE + VoiceMsgStore.RECORD_SIZE / 2);
+            file.seek(end + VoiceMsgStore.RECORD_SIZE / 2);
+            file.write(new byte[VoiceMsgStore.RECORD_SIZE]);
+        }
+
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        assertEquals(3, reopened.open());
+        assertEquals(VoiceMsgStore.LOG_HEADER_SIZE + 3 * VoiceMsgStore.RECORD_SIZE, log.length());
+        assertEquals(-1, reopened.indexOf(BASE_ID + 3));
+        reopened.append(msg(4, 1));
+        reopened.flush();
+        assertEquals(4, new VoiceMsgStore(mDir).open());
+    }
+
+    @Test
+    public void tornUpdate_keepsMessage() throws IOException {
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        store.open();
+        for (int i = 0; i < 3; i++) {
+            store.append(msg(i, 1));
+        }
+        store.flush();
+        //更新追加在日志末尾，只写了一半
+        store.markPlayed(BASE_ID + 1, System.currentTimeMillis());
+        File log = new File(mDir, VoiceMsgStore.LOG_FILE_NAME);
+        long end = VoiceMsgStore.LOG_HEADER_SIZE + 3 * VoiceMsgStore.RECORD_SIZE;
+        assertEquals(end + VoiceMsgStore.RECORD_SIZE, log.length());
+        try (RandomAccessFile file = new RandomAccessFile(log, "rw")) {
+            file.setLength(end + VoiceMsgStore.RECORD_SIZE / 2);
+        }
+
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        assertEquals(3, reopened.open());
+        assertEquals(1, reopened.indexOf(BASE_ID + 1));
+        assertEquals(0, reopened.getFlags(1));
+        //完整的更新在重建索引后保留
+        reopened.markPlayed(BASE_ID + 1, System.currentTimeMillis());
+        reopened.flush();
+        new File(mDir, VoiceMsgStore.INDEX_FILE_NAME).delete();
+        VoiceMsgStore rebuilt = new VoiceMsgStore(mDir);
+        assertEquals(3, rebuilt.open());
+        assertEquals(VoiceMsgStore.FLAG_PLAYED, rebuilt.getFlags(1));
+    }
+
+    @Test
+    public void open_withoutFlush_rebuildsIndexFromLog() {
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        store.open();
+        for (int i = 20; i > 0; i--) {
+            store.append(msg(i, 1));
+        }
+        //没有同步就退出
+
+        VoiceMsgStore reopened = new VoiceMsgStore(mDir);
+        assertEquals(20, reopened.open());
+        VoiceMsgTable page = new VoiceMsgTable(mDir, 20);
+        reopened.load(0, 20, page);
+        assertEquals(20, page.size());
+        for (int i = 0; i < 20; i++) {
+            assertEquals(BASE_ID + i + 1, page.getId(i));
+        }
+    }
+
+    @Test
+    public void firstOpen_importsRecordDir() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + i)).createNewFile());
+        }
+        assertTrue(new File(mDir, "other.txt").createNewFile());
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        final int[] progress = new int[2];
+        store.setOnRebuildProgressListener(new VoiceMsgStore.OnRebuildProgressListener() {
+            @Override
+            public void onRebuildProgress(int done, int total) {
+                progress[0] = done;
+                progress[1] = total;
+            }
+        });
+        assertEquals(3, store.open());
+        assertEquals(3, progress[0]);
+        assertEquals(3, progress[1]);
+        //时间由文件名中的开始录音时间和时长得出
+        VoiceMsgTable page = new VoiceMsgTable(mDir, 3);
+        store.load(0, 3, page);
+        assertEquals(BASE_ID + 2, page.getTime(2));
+        store.append(msg(3, 1));
+        store.flush();
+        //只导入一次
+        new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + 10)).createNewFile();
+        assertEquals(4, new VoiceMsgStore(mDir).open());
+    }
+
+    @Test
+    public void interruptedImport_isRetriedOnNextOpen() throws IOException {
+        for (int i = 0; i < 3; i++) {
+            assertTrue(new File(DefaultRecordConfig.getRecordFilePath(mDir, BASE_ID + i)).createNewFile());
+        }
+        Thread.currentThread().interrupt();
+        assertEquals(0, new VoiceMsgStore(mDir).open());
+        assertTrue(Thread.interrupted());
+        //没有写入部分结果，也没有标记为已导入
+        assertEquals(3, new VoiceMsgStore(mDir).open());
+    }
+
+    @Test
+    public void timeIndex_findsAndCountsByDay() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(2026, Calendar.OCTOBER, 1, 9, 0);
+        long day1 = calendar.getTimeInMillis();
+        VoiceMsgStore store = new VoiceMsgStore(mDir);
+        store.open();
+        //10月1日3条，10月2日没有，10月3日2条
+        for (int i = 0; i < 3; i++) {
+            store.append(msgAt(day1 + i * 60_000L));
+        }
+        calendar.set(2026, Calendar.OCTOBER, 3, 23, 0);
+        long day3 = calendar.getTimeInMillis();
+        store.append(msgAt(day3));
+        store.append(msgAt(day3 + 60_000L));
+        VoiceMsgTimeIndex index = new VoiceMsgTimeIndex(store);
+
+        calendar.set(2026, Calendar.OCTOBER, 2, 12, 0);
+        long day2 = calendar.getTimeInMillis();
+        assertEquals(3, index.positionOfDay(day2));
+        assertEquals(0, index.countOfDay(day2));
+        assertEquals(3, index.countOfDay(day1 + 3_600_000L));
+        assertEquals(1, index.positionOf(day1 + 1));
+        assertEquals(5, index.positionOf(day3 + 120_000L));
+        assertEquals(3, index.countBetween(day1 + 1, day3 + 1));
+
+        long[] days = new long[4];
+        int[] counts = new int[4];
+        assertEquals(2, index.countPerDay(0, Long.MAX_VALUE, days, counts));
+        assertEquals(day1 - 9 * 3_600_000L, days[0]);
+        assertEquals(3, counts[0]);
+        assertEquals(day3 - 23 * 3_600_000L, days[1]);
+        assertEquals(2, counts[1]);
+    }
+
+    private VoiceMsg msgAt(long id) {
+        return new VoiceMsg(id, DefaultRecordConfig.getRecordFilePath(mDir, id), 1, id);
+    }
+
+    private VoiceMsg msg(int index, int duration) {
+        long id = BASE_ID + index;
+        return new VoiceMsg(id, DefaultRecordConfig.getRecordFilePath(mDir, id), duration, id);
+    }
+}
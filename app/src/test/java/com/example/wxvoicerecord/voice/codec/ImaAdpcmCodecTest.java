@@ -0,0 +1,74 @@
+package com.example.wxvoicerecord.voice.codec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * IMA ADPCM编解码测试
+ */
+public class ImaAdpcmCodecTest {
+    private static final int SAMPLE_RATE = 16000;
+
+    @Test
+    public void monoRoundTrip_keepsSignal() {
+        int blockAlign = ImaAdpcm.defaultBlockAlign(SAMPLE_RATE, 1);
+        ImaAdpcmEncoder encoder = new ImaAdpcmEncoder(1, blockAlign);
+        ImaAdpcmDecoder decoder = new ImaAdpcmDecoder(1, blockAlign);
+        int samplesPerBlock = encoder.getSamplesPerBlock();
+        assertEquals(505, samplesPerBlock);
+
+        short[] pcm = sine(samplesPerBlock * 4, 1, 440);
+        byte[] encoded = new byte[blockAlign];
+        short[] decoded = new short[samplesPerBlock];
+        double signal = 0;
+        double noise = 0;
+        for (int block = 0; block < 4; block++) {
+            int offset = block * samplesPerBlock;
+            assertEquals(blockAlign, encoder.encodeBlock(pcm, offset, samplesPerBlock, encoded, 0));
+            assertEquals(samplesPerBlock, decoder.decodeBlock(encoded, 0, blockAlign, decoded, 0));
+            for (int i = 0; i < samplesPerBlock; i++) {
+                double error = pcm[offset + i] - decoded[i];
+                signal += pcm[offset + i] * (double) pcm[offset + i];
+                noise += error * error;
+            }
+        }
+        double snr = 10 * Math.log10(signal / noise);
+        assertTrue("snr=" + snr, snr > 20);
+    }
+
+    @Test
+    public void stereoPartialBlock_decodesEachChannel() {
+        int blockAlign = ImaAdpcm.defaultBlockAlign(SAMPLE_RATE, 2);
+        ImaAdpcmEncoder encoder = new ImaAdpcmEncoder(2, blockAlign);
+        ImaAdpcmDecoder decoder = new ImaAdpcmDecoder(2, blockAlign);
+        int samples = 100;
+        short[] pcm = sine(samples, 2, 300);
+        byte[] encoded = new byte[blockAlign];
+        int size = encoder.encodeBlock(pcm, 0, samples, encoded, 0);
+        assertEquals(ImaAdpcm.blockSize(samples, 2), size);
+
+        short[] decoded = new short[encoder.getSamplesPerBlock() * 2];
+        int decodedSamples = decoder.decodeBlock(encoded, 0, size, decoded, 0);
+        assertTrue(decodedSamples >= samples);
+        //块头中的首个采样无损
+        assertEquals(pcm[0], decoded[0]);
+        assertEquals(pcm[1], decoded[1]);
+        //步长从最小值开始自适应，跳过开头的收敛过程
+        for (int i = 40 * 2; i < samples * 2; i++) {
+            assertTrue("i=" + i, Math.abs(pcm[i] - decoded[i]) < 1000);
+        }
+    }
+
+    private static short[] sine(int samplesPerChannel, int channels, int frequency) {
+        short[] pcm = new short[samplesPerChannel * channels];
+        for (int i = 0; i < samplesPerChannel; i++) {
+            double value = Math.sin(2 * Math.PI * frequency * i / SAMPLE_RATE) * 8000;
+            for (int ch = 0; ch < channels; ch++) {
+                pcm[i * channels + ch] = (short) (ch == 0 ? value : -value);
+            }
+        }
+        return pcm;
+    }
+}